@@ -0,0 +1,107 @@
+// Precomputed attack tables for the bitboard position. Squares are numbered
+// a1 = 0 .. h8 = 63, so white pawns move towards higher square numbers.
+final class Attacks {
+    static final long FILE_A = 0x0101010101010101L;
+    static final long FILE_H = FILE_A << 7;
+    static final long RANK_1 = 0xFFL;
+    static final long RANK_2 = RANK_1 << 8;
+    static final long RANK_7 = RANK_1 << 48;
+    static final long RANK_8 = RANK_1 << 56;
+
+    static final long[] KNIGHT = new long[64];
+    static final long[] KING = new long[64];
+    static final long[][] PAWN = new long[2][64];
+    // For two squares on a common rank, file or diagonal: the squares
+    // strictly between them, and the whole line through both
+    static final long[][] BETWEEN = new long[64][64];
+    static final long[][] LINE = new long[64][64];
+
+    // Ray directions: N, NE, E, NW are "positive" (towards h8), the rest negative
+    private static final int[] DIR_RANK = { 1, 1, 0, -1, -1, -1, 0, 1 };
+    private static final int[] DIR_FILE = { 0, 1, 1, 1, 0, -1, -1, -1 };
+    private static final boolean[] POSITIVE = { true, true, true, false, false, false, false, true };
+    private static final long[][] RAYS = new long[8][64];
+
+    static {
+        int[][] knightSteps = { { 1, 2 }, { 2, 1 }, { 2, -1 }, { 1, -2 }, { -1, -2 }, { -2, -1 }, { -2, 1 }, { -1, 2 } };
+        for (int sq = 0; sq < 64; sq++) {
+            int rank = sq >>> 3, file = sq & 7;
+            for (int[] step : knightSteps) {
+                KNIGHT[sq] |= bit(rank + step[0], file + step[1]);
+            }
+            for (int dr = -1; dr <= 1; dr++) {
+                for (int df = -1; df <= 1; df++) {
+                    if (dr != 0 || df != 0)
+                        KING[sq] |= bit(rank + dr, file + df);
+                }
+            }
+            PAWN[ChessPiece.WHITE][sq] = bit(rank + 1, file - 1) | bit(rank + 1, file + 1);
+            PAWN[ChessPiece.BLACK][sq] = bit(rank - 1, file - 1) | bit(rank - 1, file + 1);
+            for (int dir = 0; dir < 8; dir++) {
+                int r = rank + DIR_RANK[dir], f = file + DIR_FILE[dir];
+                while (r >= 0 && r < 8 && f >= 0 && f < 8) {
+                    RAYS[dir][sq] |= 1L << (r * 8 + f);
+                    r += DIR_RANK[dir];
+                    f += DIR_FILE[dir];
+                }
+            }
+        }
+        for (int sq = 0; sq < 64; sq++) {
+            for (int dir = 0; dir < 8; dir++) {
+                for (long bb = RAYS[dir][sq]; bb != 0; bb &= bb - 1) {
+                    int other = Long.numberOfTrailingZeros(bb);
+                    BETWEEN[sq][other] = RAYS[dir][sq] & ~RAYS[dir][other] & ~(1L << other);
+                    LINE[sq][other] = RAYS[dir][sq] | RAYS[(dir + 4) & 7][sq] | (1L << sq);
+                }
+            }
+        }
+    }
+
+    private Attacks() {
+    }
+
+    private static long bit(int rank, int file) {
+        return rank >= 0 && rank < 8 && file >= 0 && file < 8 ? 1L << (rank * 8 + file) : 0L;
+    }
+
+    private static long ray(int dir, int sq, long occupied) {
+        long attacks = RAYS[dir][sq];
+        long blockers = attacks & occupied;
+        if (blockers != 0) {
+            int first = POSITIVE[dir] ? Long.numberOfTrailingZeros(blockers)
+                    : 63 - Long.numberOfLeadingZeros(blockers);
+            attacks ^= RAYS[dir][first];
+        }
+        return attacks;
+    }
+
+    static long rook(int sq, long occupied) {
+        return ray(0, sq, occupied) | ray(2, sq, occupied) | ray(4, sq, occupied) | ray(6, sq, occupied);
+    }
+
+    static long bishop(int sq, long occupied) {
+        return ray(1, sq, occupied) | ray(3, sq, occupied) | ray(5, sq, occupied) | ray(7, sq, occupied);
+    }
+
+    static long queen(int sq, long occupied) {
+        return rook(sq, occupied) | bishop(sq, occupied);
+    }
+
+    // Attack set of a non-pawn piece of the given type standing on sq
+    static long piece(int type, int sq, long occupied) {
+        switch (type) {
+            case ChessPiece.KNIGHT:
+                return KNIGHT[sq];
+            case ChessPiece.BISHOP:
+                return bishop(sq, occupied);
+            case ChessPiece.ROOK:
+                return rook(sq, occupied);
+            case ChessPiece.QUEEN:
+                return queen(sq, occupied);
+            case ChessPiece.KING:
+                return KING[sq];
+            default:
+                return 0L;
+        }
+    }
+}
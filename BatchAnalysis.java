@@ -0,0 +1,240 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+// Headless analysis of many positions: FENs are read one per line and
+// searched in parallel on a fork-join pool to a fixed depth or node
+// count, and each result is written as one JSON line as soon as it may
+// be, in input order or in order of completion. Input is read only a
+// bounded window ahead of the output, so a file of millions of positions
+// streams through in constant memory.
+//
+// Every pool thread keeps one single-threaded Engine for all the
+// positions it analyzes, so search tables are allocated once per thread
+// and the transposition table carries over between related positions.
+// Results at a fixed depth can therefore vary slightly with scheduling.
+//
+// Usage: java BatchAnalysis [-in file|-] [-out file] [-depth 10]
+//        [-nodes N] [-threads N] [-hash 16] [-unordered]
+//
+// Output lines look like
+//   {"line":1,"fen":"...","depth":10,"score":{"cp":31},"bestmove":"e2e4",
+//    "pv":["e2e4","e7e5"],"nodes":123456}
+// with "score":{"mate":N} in moves, negative when the side to move is
+// mated, and "bestmove":null when it has no legal move. Lines that are
+// not a valid FEN get an "error" instead of the analysis.
+public class BatchAnalysis {
+    private static final int WINDOW_PER_THREAD = 64;
+    private static final int MAX_PV = 32;
+
+    private final int threads, hashMegabytes, depth;
+    private final long nodeLimit;
+    private final boolean ordered;
+
+    private final ThreadLocal<Engine> engines;
+    private final LongAdder nodes = new LongAdder();
+
+    // Results waiting for an earlier line before they can be written
+    private final Map<Long, String> finished = new HashMap<>();
+    private long nextToWrite;
+    private Writer out;
+    private IOException writeFailure;
+
+    BatchAnalysis(int threads, int hashMegabytes, int depth, long nodeLimit, boolean ordered) {
+        this.threads = Math.max(1, threads);
+        this.hashMegabytes = hashMegabytes;
+        this.depth = depth;
+        this.nodeLimit = nodeLimit;
+        this.ordered = ordered;
+        engines = ThreadLocal.withInitial(() -> new Engine(this.hashMegabytes, 1));
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        String input = "-", output = null;
+        int depth = 10, threads = Engine.defaultThreads(), hash = 16;
+        long nodes = Long.MAX_VALUE;
+        boolean ordered = true;
+        for (int a = 0; a < args.length; a++) {
+            switch (args[a]) {
+                case "-in":
+                    input = args[++a];
+                    break;
+                case "-out":
+                    output = args[++a];
+                    break;
+                case "-depth":
+                    depth = Integer.parseInt(args[++a]);
+                    break;
+                case "-nodes":
+                    nodes = Long.parseLong(args[++a]);
+                    depth = Search.MAX_PLY;
+                    break;
+                case "-threads":
+                    threads = Integer.parseInt(args[++a]);
+                    break;
+                case "-hash":
+                    hash = Integer.parseInt(args[++a]);
+                    break;
+                case "-unordered":
+                    ordered = false;
+                    break;
+                default:
+                    System.err.println("Unknown option: " + args[a]);
+                    System.exit(2);
+            }
+        }
+        BatchAnalysis analysis = new BatchAnalysis(threads, hash, depth, nodes, ordered);
+        long start = System.nanoTime();
+        long count;
+        try (BufferedReader in = input.equals("-")
+                ? new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8))
+                : Files.newBufferedReader(Paths.get(input));
+                Writer out = output == null
+                        ? new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8))
+                        : Files.newBufferedWriter(Paths.get(output))) {
+            count = analysis.run(in, out);
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.err.printf(Locale.ROOT, "Analyzed %d positions in %.1f s: %.1f positions/s, %.0f nodes/s, %d threads%n",
+                count, seconds, count / seconds, analysis.getNodes() / seconds, analysis.threads);
+    }
+
+    // Analyzes every FEN line of in and writes one JSON line per position
+    // to out; blank lines and lines starting with '#' are skipped. Returns
+    // the number of positions.
+    long run(BufferedReader in, Writer out) throws IOException, InterruptedException {
+        this.out = out;
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        Semaphore window = new Semaphore(threads * WINDOW_PER_THREAD);
+        long count = 0, lineNumber = 0;
+        try {
+            for (String line; (line = in.readLine()) != null;) {
+                lineNumber++;
+                String fen = line.trim();
+                if (fen.isEmpty() || fen.startsWith("#"))
+                    continue;
+                window.acquire();
+                long index = count++, number = lineNumber;
+                pool.execute(() -> {
+                    try {
+                        String result;
+                        try {
+                            result = analyze(number, fen);
+                        } catch (RuntimeException e) {
+                            result = error(number, fen, "analysis failed: " + e);
+                        }
+                        emit(index, result);
+                    } finally {
+                        window.release();
+                    }
+                });
+                synchronized (this) {
+                    if (writeFailure != null)
+                        throw writeFailure;
+                }
+            }
+        } finally {
+            pool.shutdown();
+            pool.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        }
+        synchronized (this) {
+            if (writeFailure != null)
+                throw writeFailure;
+            out.flush();
+        }
+        return count;
+    }
+
+    long getNodes() {
+        return nodes.sum();
+    }
+
+    private String analyze(long lineNumber, String fen) {
+        Position pos;
+        try {
+            pos = Position.fromFen(fen);
+        } catch (RuntimeException e) {
+            return error(lineNumber, fen, "invalid FEN");
+        }
+        StringBuilder json = start(lineNumber, fen);
+        Engine engine = engines.get();
+        int best = engine.findBestMove(pos, SearchLimits.INFINITE, depth, nodeLimit);
+        nodes.add(engine.getNodes());
+        json.append(",\"depth\":").append(engine.getCompletedDepth()).append(",\"score\":");
+        if (best == Moves.NONE) {
+            json.append(pos.inCheck() ? "{\"mate\":0}" : "{\"cp\":0}").append(",\"bestmove\":null,\"pv\":[]");
+        } else {
+            int score = engine.getScore();
+            int plies = Search.pliesToMate(score);
+            if (plies >= 0)
+                json.append("{\"mate\":").append(score > 0 ? (plies + 1) / 2 : -(plies + 1) / 2).append('}');
+            else
+                json.append("{\"cp\":").append(score).append('}');
+            json.append(",\"bestmove\":\"").append(Moves.toUci(best)).append("\",\"pv\":[");
+            int[] pv = engine.principalVariation(pos, best, MAX_PV);
+            for (int i = 0; i < pv.length; i++)
+                json.append(i > 0 ? ",\"" : "\"").append(Moves.toUci(pv[i])).append('"');
+            json.append(']');
+        }
+        return json.append(",\"nodes\":").append(engine.getNodes()).append('}').toString();
+    }
+
+    private static StringBuilder start(long lineNumber, String fen) {
+        StringBuilder json = new StringBuilder(256).append("{\"line\":").append(lineNumber).append(",\"fen\":");
+        appendString(json, fen);
+        return json;
+    }
+
+    private static String error(long lineNumber, String fen, String message) {
+        StringBuilder json = start(lineNumber, fen).append(",\"error\":");
+        appendString(json, message);
+        return json.append('}').toString();
+    }
+
+    // Writes a result now, or once every earlier one is out when ordered
+    private synchronized void emit(long index, String line) {
+        if (writeFailure != null)
+            return;
+        try {
+            if (!ordered) {
+                out.write(line);
+                out.write('\n');
+                return;
+            }
+            finished.put(index, line);
+            for (String next; (next = finished.remove(nextToWrite)) != null; nextToWrite++) {
+                out.write(next);
+                out.write('\n');
+            }
+        } catch (IOException e) {
+            writeFailure = e;
+        }
+    }
+
+    private static void appendString(StringBuilder json, String s) {
+        json.append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '"' || c == '\\')
+                json.append('\\').append(c);
+            else if (c < 0x20)
+                json.append(String.format(Locale.ROOT, "\\u%04x", (int) c));
+            else
+                json.append(c);
+        }
+        json.append('"');
+    }
+}
@@ -0,0 +1,75 @@
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.Locale;
+
+// Measures how long BoardView takes to paint a frame, off screen into an
+// image of the given size so it runs headless. A full repaint paints the
+// whole component with the board unchanged; a new position first shows
+// the next reference position, redrawing every square that differs, then
+// paints the whole component; a cold paint is a fresh view's first frame,
+// which draws the board image from scratch.
+//
+// Usage: java BoardPaintBench [frames] [width] [height] [piece style]
+public class BoardPaintBench {
+    public static void main(String[] args) {
+        System.setProperty("java.awt.headless", "true");
+        int frames = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        int width = args.length > 1 ? Integer.parseInt(args[1]) : 1920;
+        int height = args.length > 2 ? Integer.parseInt(args[2]) : 1080;
+        String style = args.length > 3 ? args[3] : PieceSprites.STYLES[0];
+
+        Position[] positions = new Position[EngineBench.POSITIONS.length];
+        for (int i = 0; i < positions.length; i++)
+            positions[i] = Position.fromFen(EngineBench.POSITIONS[i]);
+        BufferedImage screen = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = screen.createGraphics();
+
+        BoardView view = newView(style, width, height, positions[0]);
+        System.out.printf(Locale.ROOT, "%dx%d, %s pieces, %d frames%n", width, height, style, frames);
+        System.out.printf("%-14s %10s %10s %10s%n", "frame", "mean ms", "p99 ms", "max ms");
+        for (int round = 0; round < 2; round++) {
+            // The first round warms up and is not reported
+            boolean report = round == 1;
+            long[] nanos = new long[frames];
+            for (int f = 0; f < frames; f++) {
+                long start = System.nanoTime();
+                view.paint(g);
+                nanos[f] = System.nanoTime() - start;
+            }
+            print(report, "full repaint", nanos);
+            for (int f = 0; f < frames; f++) {
+                long start = System.nanoTime();
+                view.setPosition(positions[(f + 1) % positions.length], Moves.NONE);
+                view.paint(g);
+                nanos[f] = System.nanoTime() - start;
+            }
+            print(report, "new position", nanos);
+            long[] cold = new long[Math.max(1, frames / 10)];
+            for (int f = 0; f < cold.length; f++) {
+                long start = System.nanoTime();
+                newView(style, width, height, positions[f % positions.length]).paint(g);
+                cold[f] = System.nanoTime() - start;
+            }
+            print(report, "cold paint", cold);
+        }
+        g.dispose();
+    }
+
+    private static BoardView newView(String style, int width, int height, Position pos) {
+        BoardView view = new BoardView("Classic", style, (row, col) -> { });
+        view.setBounds(0, 0, width, height);
+        view.setPosition(pos, Moves.NONE);
+        return view;
+    }
+
+    private static void print(boolean report, String name, long[] nanos) {
+        if (!report)
+            return;
+        long[] sorted = nanos.clone();
+        Arrays.sort(sorted);
+        double mean = Arrays.stream(sorted).average().orElse(0);
+        System.out.printf(Locale.ROOT, "%-14s %10.3f %10.3f %10.3f%n", name, mean / 1e6,
+                sorted[(int) (sorted.length * 0.99)] / 1e6, sorted[sorted.length - 1] / 1e6);
+    }
+}
@@ -0,0 +1,307 @@
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Graphics;
+import java.awt.GraphicsConfiguration;
+import java.awt.Rectangle;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import javax.swing.ImageIcon;
+import javax.swing.JComponent;
+import javax.swing.Timer;
+
+// The board as a single component painted with Java2D. The squares and
+// resting pieces are kept in an image that changes redraw one square at
+// a time, so painting is a copy of the clipped region plus any piece in
+// flight, and changes repaint only the squares involved.
+// Pressing a square reports a click; dragging the selected piece and
+// letting go on another square reports a second click there, so the
+// owner handles both input styles with one click handler. Moves passed
+// to setPosition slide into place unless they were just dropped.
+final class BoardView extends JComponent {
+    private static final long serialVersionUID = 1L;
+
+    interface SquareListener {
+        void squareClicked(int row, int col);
+    }
+
+    // Light and dark square colors per board color
+    private static final Color[] CLASSIC = { new Color(240, 217, 181), new Color(181, 136, 99) };
+    private static final Color[] BLUE = { new Color(187, 222, 251), new Color(33, 150, 243) };
+    private static final Color[] GREEN = { new Color(200, 230, 201), new Color(76, 175, 80) };
+    private static final Color[] RED = { new Color(255, 205, 210), new Color(229, 115, 115) };
+    private static final Color[] PURPLE = { new Color(225, 190, 231), new Color(156, 39, 176) };
+    private static final Color SELECTED = Color.YELLOW;
+
+    private static final int ANIMATION_MILLIS = 150;
+    private static final int DRAG_THRESHOLD = 4;
+
+    private final Color[] squareColors;
+    private final String pieceStyle;
+    private final SquareListener listener;
+    private final int[] board = new int[64];
+    private int selected = -1;
+
+    // Geometry of the last layout, and the icons for its square size
+    private int squareSize, originX, originY;
+    private ImageIcon[][] icons;
+    private BufferedImage boardImage;
+
+    // A piece drawn off its square while dragged or animated; the square
+    // it belongs to is painted without it meanwhile
+    private int floatingSquare = -1;
+    private int floatingPiece = Position.EMPTY;
+    private int floatingX, floatingY;
+    private int pressedSquare = -1, pressX, pressY;
+    private boolean dragging, dropping;
+
+    private final Timer animation = new Timer(15, e -> stepAnimation());
+    private long animationStart;
+    private int animationFromX, animationFromY;
+
+    BoardView(String boardColor, String pieceStyle, SquareListener listener) {
+        this.squareColors = squareColors(boardColor);
+        this.pieceStyle = pieceStyle;
+        this.listener = listener;
+        Arrays.fill(board, Position.EMPTY);
+        setOpaque(true);
+        setPreferredSize(new Dimension(640, 640));
+        MouseAdapter mouse = new MouseAdapter() {
+            @Override
+            public void mousePressed(MouseEvent e) {
+                pressed(e.getX(), e.getY());
+            }
+
+            @Override
+            public void mouseDragged(MouseEvent e) {
+                dragged(e.getX(), e.getY());
+            }
+
+            @Override
+            public void mouseReleased(MouseEvent e) {
+                released(e.getX(), e.getY());
+            }
+        };
+        addMouseListener(mouse);
+        addMouseMotionListener(mouse);
+    }
+
+    private static Color[] squareColors(String boardColor) {
+        switch (boardColor) {
+            case "Blue":
+                return BLUE;
+            case "Green":
+                return GREEN;
+            case "Red":
+                return RED;
+            case "Purple":
+                return PURPLE;
+            default:
+                return CLASSIC;
+        }
+    }
+
+    // Shows pos; move, if any, is the move that led to it and is animated
+    void setPosition(Position pos, int move) {
+        finishAnimation();
+        for (int sq = 0; sq < 64; sq++) {
+            if (board[sq] != pos.board[sq]) {
+                board[sq] = pos.board[sq];
+                updateSquare(sq);
+            }
+        }
+        if (move != Moves.NONE && !dropping && squareSize > 0) {
+            int to = Moves.to(move);
+            floatingSquare = to;
+            floatingPiece = board[to];
+            animationFromX = squareX(Moves.from(move));
+            animationFromY = squareY(Moves.from(move));
+            floatingX = animationFromX;
+            floatingY = animationFromY;
+            updateSquare(to);
+            animationStart = System.nanoTime();
+            animation.start();
+        }
+    }
+
+    // Highlights a square, or none for -1
+    void setSelected(int row, int col) {
+        int sq = row < 0 ? -1 : Position.square(row, col);
+        if (sq == selected)
+            return;
+        int previous = selected;
+        selected = sq;
+        if (previous >= 0)
+            updateSquare(previous);
+        if (selected >= 0)
+            updateSquare(selected);
+    }
+
+    private void stepAnimation() {
+        double t = Math.min(1.0, (System.nanoTime() - animationStart) / (ANIMATION_MILLIS * 1e6));
+        // Ease out: fast start, gentle landing
+        double eased = 1 - (1 - t) * (1 - t);
+        moveFloating((int) Math.round(animationFromX + (squareX(floatingSquare) - animationFromX) * eased),
+                (int) Math.round(animationFromY + (squareY(floatingSquare) - animationFromY) * eased));
+        if (t >= 1.0)
+            finishAnimation();
+    }
+
+    private void finishAnimation() {
+        if (!animation.isRunning())
+            return;
+        animation.stop();
+        repaint(floatingX, floatingY, squareSize, squareSize);
+        int landed = floatingSquare;
+        floatingSquare = -1;
+        updateSquare(landed);
+    }
+
+    private void moveFloating(int x, int y) {
+        repaint(floatingX, floatingY, squareSize, squareSize);
+        floatingX = x;
+        floatingY = y;
+        repaint(floatingX, floatingY, squareSize, squareSize);
+    }
+
+    private void pressed(int x, int y) {
+        finishAnimation();
+        pressedSquare = squareAt(x, y);
+        pressX = x;
+        pressY = y;
+        if (pressedSquare >= 0)
+            listener.squareClicked(Position.row(pressedSquare), Position.col(pressedSquare));
+    }
+
+    private void dragged(int x, int y) {
+        if (!dragging) {
+            // Only the piece the click selected can be dragged
+            if (pressedSquare < 0 || pressedSquare != selected || board[pressedSquare] == Position.EMPTY
+                    || Math.abs(x - pressX) + Math.abs(y - pressY) < DRAG_THRESHOLD)
+                return;
+            dragging = true;
+            floatingSquare = pressedSquare;
+            floatingPiece = board[pressedSquare];
+            floatingX = squareX(pressedSquare);
+            floatingY = squareY(pressedSquare);
+            updateSquare(pressedSquare);
+        }
+        moveFloating(x - squareSize / 2, y - squareSize / 2);
+    }
+
+    private void released(int x, int y) {
+        if (!dragging)
+            return;
+        dragging = false;
+        repaint(floatingX, floatingY, squareSize, squareSize);
+        floatingSquare = -1;
+        updateSquare(pressedSquare);
+        int target = squareAt(x, y);
+        if (target >= 0 && target != pressedSquare) {
+            dropping = true;
+            try {
+                listener.squareClicked(Position.row(target), Position.col(target));
+            } finally {
+                dropping = false;
+            }
+        }
+    }
+
+    private void layoutSquares() {
+        int size = Math.min(getWidth(), getHeight()) / 8;
+        if (size != squareSize) {
+            squareSize = size;
+            icons = size > 0 ? PieceSprites.get(pieceStyle, size * 7 / 8) : null;
+            boardImage = null;
+        }
+        originX = (getWidth() - 8 * size) / 2;
+        originY = (getHeight() - 8 * size) / 2;
+    }
+
+    // Squares are found by arithmetic on the current geometry
+    private int squareAt(int x, int y) {
+        if (squareSize == 0 || x < originX || y < originY)
+            return -1;
+        int col = (x - originX) / squareSize, row = (y - originY) / squareSize;
+        return col < 8 && row < 8 ? Position.square(row, col) : -1;
+    }
+
+    private int squareX(int sq) {
+        return originX + Position.col(sq) * squareSize;
+    }
+
+    private int squareY(int sq) {
+        return originY + Position.row(sq) * squareSize;
+    }
+
+    private void repaintSquare(int sq) {
+        repaint(squareX(sq), squareY(sq), squareSize, squareSize);
+    }
+
+    // Redraws one square of the board image and repaints it
+    private void updateSquare(int sq) {
+        if (boardImage != null) {
+            Graphics g = boardImage.createGraphics();
+            drawSquare(g, sq);
+            g.dispose();
+        }
+        repaintSquare(sq);
+    }
+
+    private void drawSquare(Graphics g, int sq) {
+        int row = Position.row(sq), col = Position.col(sq);
+        int x = col * squareSize, y = row * squareSize;
+        g.setColor(sq == selected ? SELECTED : squareColors[(row + col) % 2]);
+        g.fillRect(x, y, squareSize, squareSize);
+        int piece = board[sq];
+        if (piece != Position.EMPTY && sq != floatingSquare) {
+            int inset = (squareSize - squareSize * 7 / 8) / 2;
+            icons[Position.colorOf(piece)][Position.typeOf(piece)].paintIcon(this, g, x + inset, y + inset);
+        }
+    }
+
+    private void renderBoard() {
+        int size = 8 * squareSize;
+        GraphicsConfiguration gc = getGraphicsConfiguration();
+        boardImage = gc != null ? gc.createCompatibleImage(size, size)
+                : new BufferedImage(size, size, BufferedImage.TYPE_INT_RGB);
+        Graphics g = boardImage.createGraphics();
+        for (int sq = 0; sq < 64; sq++)
+            drawSquare(g, sq);
+        g.dispose();
+    }
+
+    @Override
+    public void setBounds(int x, int y, int width, int height) {
+        super.setBounds(x, y, width, height);
+        layoutSquares();
+    }
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        Rectangle clip = g.getClipBounds();
+        if (clip == null)
+            clip = new Rectangle(0, 0, getWidth(), getHeight());
+        // The margins around the board, then the board image
+        int boardSize = 8 * squareSize;
+        g.setColor(getBackground());
+        if (squareSize == 0 || !new Rectangle(originX, originY, boardSize, boardSize).contains(clip)) {
+            g.fillRect(clip.x, clip.y, originX - clip.x, clip.height);
+            g.fillRect(originX + boardSize, clip.y, clip.x + clip.width - originX - boardSize, clip.height);
+            g.fillRect(clip.x, clip.y, clip.width, originY - clip.y);
+            g.fillRect(clip.x, originY + boardSize, clip.width, clip.y + clip.height - originY - boardSize);
+        }
+        if (squareSize == 0)
+            return;
+        if (boardImage == null)
+            renderBoard();
+        g.drawImage(boardImage, originX, originY, null);
+        if (floatingSquare >= 0 && floatingPiece != Position.EMPTY
+                && clip.intersects(floatingX, floatingY, squareSize, squareSize)) {
+            int inset = (squareSize - squareSize * 7 / 8) / 2;
+            icons[Position.colorOf(floatingPiece)][Position.typeOf(floatingPiece)].paintIcon(this, g,
+                    floatingX + inset, floatingY + inset);
+        }
+    }
+}
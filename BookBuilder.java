@@ -0,0 +1,133 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Locale;
+
+// Builds a Polyglot opening book from a PGN collection. Games are streamed
+// through PgnReader and every (position, move) of their opening plies goes
+// through a PairSorter, so the collection can be far larger than memory.
+// A move scores 2 for a win and 1 for a draw of the side that played it;
+// moves seen in fewer than -min games, or that never scored, are left out.
+// The book is keyed with PolyglotBook's random table, so build it with the
+// same -Dchess.polyglotRandom setting it will be read with.
+//
+// Usage: java BookBuilder <games.pgn> <book.bin> [-plies 20] [-min 3]
+public class BookBuilder {
+    private static final int MAX_MOVES_PER_KEY = 256;
+
+    private int plies = 20;
+    private int minGames = 3;
+
+    // Moves gathered for the key being written
+    private final int[] moves = new int[MAX_MOVES_PER_KEY];
+    private final long[] weights = new long[MAX_MOVES_PER_KEY];
+    private int moveCount;
+    private long currentKey;
+    private long entries, positions;
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: java BookBuilder <games.pgn> <book.bin> [-plies 20] [-min 3]");
+            System.exit(2);
+        }
+        BookBuilder builder = new BookBuilder();
+        for (int a = 2; a < args.length; a++) {
+            if (args[a].equals("-plies"))
+                builder.plies = Integer.parseInt(args[++a]);
+            else if (args[a].equals("-min"))
+                builder.minGames = Integer.parseInt(args[++a]);
+        }
+        long start = System.nanoTime();
+        long games = builder.build(args[0], Paths.get(args[1]));
+        System.out.printf(Locale.ROOT, "Games: %d, positions: %d, entries: %d, %.2f s%n", games, builder.positions,
+                builder.entries, (System.nanoTime() - start) / 1e9);
+    }
+
+    long build(String pgn, Path book) throws IOException {
+        PairSorter sorter = new PairSorter(book.toAbsolutePath().getParent());
+        long games = 0;
+        try (PgnReader reader = PgnReader.open(pgn, true)) {
+            PgnGame game;
+            while ((game = reader.next()) != null) {
+                games++;
+                String result = game.getResult();
+                Position pos = game.startPosition();
+                int length = Math.min(plies, game.moveCount());
+                for (int i = 0; i < length; i++) {
+                    int move = game.move(i);
+                    boolean white = pos.sideToMove == ChessPiece.WHITE;
+                    int score = result.equals("1/2-1/2") ? 1
+                            : result.equals(white ? "1-0" : "0-1") ? 2 : 0;
+                    // Sorted by key, then move, so each move's games are adjacent
+                    sorter.add(PolyglotBook.key(pos), ((long) PolyglotBook.toPolyglot(move) << 32) | score);
+                    pos.makeMove(move);
+                }
+            }
+        }
+
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(book), 1 << 16))) {
+            PolyglotBook.writeMarker(out);
+            long[] move = { 0, -1, 0, 0 }; // key, move, games, summed score
+            sorter.merge((key, value) -> {
+                if (key != move[0] || (value >>> 32) != move[1]) {
+                    addMove(move, out);
+                    move[0] = key;
+                    move[1] = value >>> 32;
+                    move[2] = 0;
+                    move[3] = 0;
+                }
+                move[2]++;
+                move[3] += value & 0xFFFFFFFFL;
+            });
+            addMove(move, out);
+            flushKey(out);
+        }
+        return games;
+    }
+
+    private void addMove(long[] move, DataOutputStream out) throws IOException {
+        if (move[1] < 0)
+            return;
+        if (move[0] != currentKey)
+            flushKey(out);
+        currentKey = move[0];
+        if (move[2] >= minGames && move[3] > 0 && moveCount < MAX_MOVES_PER_KEY) {
+            moves[moveCount] = (int) move[1];
+            weights[moveCount++] = move[3];
+        }
+    }
+
+    // Writes the moves of the current key, best first, scaling weights
+    // into 16 bits when needed
+    private void flushKey(DataOutputStream out) throws IOException {
+        if (moveCount == 0)
+            return;
+        long max = 0;
+        for (int i = 0; i < moveCount; i++)
+            max = Math.max(max, weights[i]);
+        for (int i = 1; i < moveCount; i++) {
+            for (int j = i; j > 0 && weights[j] > weights[j - 1]; j--) {
+                long w = weights[j];
+                weights[j] = weights[j - 1];
+                weights[j - 1] = w;
+                int m = moves[j];
+                moves[j] = moves[j - 1];
+                moves[j - 1] = m;
+            }
+        }
+        for (int i = 0; i < moveCount; i++) {
+            long weight = max > 0xFFFF ? Math.max(1, weights[i] * 0xFFFF / max) : weights[i];
+            out.writeLong(currentKey);
+            out.writeShort(moves[i]);
+            out.writeShort((int) weight);
+            out.writeInt(0);
+            entries++;
+        }
+        positions++;
+        moveCount = 0;
+    }
+}
@@ -1,51 +1,80 @@
 import javax.swing.*;
 import java.awt.*;
+import java.awt.datatransfer.StringSelection;
 import java.awt.event.ActionEvent;
-import java.awt.image.BufferedImage;
-import java.util.ArrayList;
-import java.util.List;
+import java.awt.event.KeyEvent;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
 import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 public class Chess {
     private Timer player1Timer;
     private Timer player2Timer;
 
-    public static void main(String[] args) {
+    public static void main(String[] args) throws IOException {
+        for (String arg : args) {
+            if (arg.equals("--uci")) {
+                System.setProperty("java.awt.headless", "true");
+                UciEngine.run();
+                return;
+            }
+        }
         SwingUtilities.invokeLater(() -> new MainMenu());
     }
 }
 
 class MainMenu extends JFrame {
-    private JButton pvpButton, pvcButton, colorButton, pieceButton;
+    private JButton pvpButton, pvcButton, simulButton, colorButton, pieceButton, clockButton, threadsButton;
     private String[] boardColors = { "Classic", "Blue", "Green", "Red", "Purple" };
-    private String[] pieceStyles = { "Standard", "Modern", "Minimalist" };
+    private String[] pieceStyles = PieceSprites.STYLES;
     private String selectedColor = "Classic";
     private String selectedStyle = "Standard";
+    private String selectedTimeControl = GameClock.TIME_CONTROLS[0];
+    private int selectedThreads = Engine.defaultThreads();
 
     public MainMenu() {
         setTitle("Chess Game");
         setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
-        setSize(400, 300);
+        setSize(400, 400);
         setLocationRelativeTo(null);
 
         JPanel panel = new JPanel();
-        panel.setLayout(new GridLayout(4, 1, 10, 10));
+        panel.setLayout(new GridLayout(7, 1, 10, 10));
         panel.setBorder(BorderFactory.createEmptyBorder(20, 20, 20, 20));
 
         pvpButton = new JButton("Player vs Player");
         pvcButton = new JButton("Player vs Computer");
+        simulButton = new JButton("Simultaneous Exhibition");
         colorButton = new JButton("Change Board Color");
         pieceButton = new JButton("Change Piece Style");
+        clockButton = new JButton("Time Control");
+        threadsButton = new JButton("Engine Threads");
 
         pvpButton.addActionListener(e -> openPlayerNamesDialog());
         pvcButton.addActionListener(e -> openPlayerVsComputerDialog());
+        simulButton.addActionListener(e -> openSimulDialog());
         colorButton.addActionListener(e -> changeBoardColor());
         pieceButton.addActionListener(e -> changePieceStyle());
+        clockButton.addActionListener(e -> changeTimeControl());
+        threadsButton.addActionListener(e -> changeEngineThreads());
 
         panel.add(pvpButton);
         panel.add(pvcButton);
+        panel.add(simulButton);
         panel.add(colorButton);
         panel.add(pieceButton);
+        panel.add(clockButton);
+        panel.add(threadsButton);
 
         add(panel);
         setVisible(true);
@@ -90,7 +119,7 @@ class MainMenu extends JFrame {
         dialog.getRootPane().setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
 
         JTextField playerField = new JTextField("Player");
-        JComboBox<String> difficultyBox = new JComboBox<>(new String[] { "Easy", "Intermediate", "Hard" });
+        JComboBox<String> difficultyBox = new JComboBox<>(ComputerPlayer.LEVELS);
         JButton startButton = new JButton("Start Game");
 
         startButton.addActionListener(e -> {
@@ -113,6 +142,35 @@ class MainMenu extends JFrame {
         dialog.setVisible(true);
     }
 
+    private void openSimulDialog() {
+        JDialog dialog = new JDialog(this, "Simultaneous Exhibition Setup", true);
+        dialog.setSize(300, 180);
+        dialog.setLocationRelativeTo(this);
+        dialog.setLayout(new GridLayout(3, 2, 10, 10));
+        dialog.getRootPane().setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
+
+        JSpinner boardsSpinner = new JSpinner(new SpinnerNumberModel(12, 1, 100, 1));
+        JComboBox<String> difficultyBox = new JComboBox<>(ComputerPlayer.LEVELS);
+        difficultyBox.setSelectedItem("Hard");
+        JButton startButton = new JButton("Start Simul");
+
+        startButton.addActionListener(e -> {
+            int boards = (Integer) boardsSpinner.getValue();
+            String difficulty = (String) difficultyBox.getSelectedItem();
+            dialog.dispose();
+            SwingUtilities.invokeLater(() -> new SimulWindow(boards, difficulty, selectedColor, selectedStyle,
+                    selectedThreads));
+        });
+
+        dialog.add(new JLabel("Boards:"));
+        dialog.add(boardsSpinner);
+        dialog.add(new JLabel("Difficulty:"));
+        dialog.add(difficultyBox);
+        dialog.add(new JLabel(""));
+        dialog.add(startButton);
+        dialog.setVisible(true);
+    }
+
     private void changeBoardColor() {
         String selected = (String) JOptionPane.showInputDialog(
                 this,
@@ -143,20 +201,56 @@ class MainMenu extends JFrame {
         }
     }
 
+    private void changeTimeControl() {
+        String selected = (String) JOptionPane.showInputDialog(
+                this,
+                "Select Time Control (minutes + increment, d = delay):",
+                "Time Control",
+                JOptionPane.QUESTION_MESSAGE,
+                null,
+                GameClock.TIME_CONTROLS,
+                selectedTimeControl);
+        if (selected != null) {
+            selectedTimeControl = selected;
+            JOptionPane.showMessageDialog(this, "Time control changed to " + selected);
+        }
+    }
+
+    private void changeEngineThreads() {
+        Integer[] choices = new Integer[Engine.defaultThreads()];
+        for (int i = 0; i < choices.length; i++)
+            choices[i] = i + 1;
+        Integer selected = (Integer) JOptionPane.showInputDialog(
+                this,
+                "Select Engine Threads:",
+                "Engine Threads",
+                JOptionPane.QUESTION_MESSAGE,
+                null,
+                choices,
+                selectedThreads);
+        if (selected != null) {
+            selectedThreads = selected;
+            JOptionPane.showMessageDialog(this, "Engine threads changed to " + selected);
+        }
+    }
+
     private void startGame(String player1Name, String player2Name, boolean vsComputer, String difficulty) {
         SwingUtilities.invokeLater(() -> {
-            new ChessBoard(player1Name, player2Name, vsComputer, difficulty, selectedColor, selectedStyle);
+            new ChessBoard(player1Name, player2Name, vsComputer, difficulty, selectedColor, selectedStyle,
+                    selectedTimeControl, selectedThreads);
         });
     }
 }
 
 // Chess Board GUI
 class ChessBoard extends JFrame {
-    private static final int BOARD_SIZE = 8;
-    private JPanel boardPanel;
+    private BoardView boardView;
     private JLabel statusLabel, timerLabel1, timerLabel2;
-    private JButton[][] squares = new JButton[BOARD_SIZE][BOARD_SIZE];
-    private ChessPiece[][] board = new ChessPiece[BOARD_SIZE][BOARD_SIZE];
+    private Position position = new Position();
+    private PgnGame game = new PgnGame(); // moves played, for saving
+    // Moves taken back, the next to replay last; a new move discards them
+    private int[] redoMoves = new int[16];
+    private int redoCount;
     private ChessPiece selectedPiece = null;
     private int selectedRow = -1;
     private int selectedCol = -1;
@@ -166,63 +260,72 @@ class ChessBoard extends JFrame {
     private String difficulty;
     private String boardColor;
     private String pieceStyle;
-    private javax.swing.Timer player1Timer, player2Timer;
+    private final GameClock clock;
+    // Refreshes the clock labels, which change only when the shown value does
+    private Timer clockTimer;
+    private final long[] shownTimes = { -1, -1 };
     private boolean gameActive = false;
-    private int player1Seconds = 1200; // 20 minutes in seconds
-    private int player2Seconds = 1200;
+    private final int[] moveBuffer = new int[MoveGenerator.MAX_MOVES];
+    private final Engine engine;
+    private final ComputerPlayer computerPlayer;
+    private final ExecutorService computerExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "computer-player");
+        t.setDaemon(true);
+        return t;
+    });
+    private Future<?> pendingComputerMove;
+    private Future<Integer> ponderSearch;
+    private int ponderMove = Moves.NONE;
+    private boolean computerThinking = false;
+    // Optional side panel with the engine's search statistics
+    private final EngineStatsPanel statsPanel = new EngineStatsPanel();
+    private SearchStats shownStats;
 
-    // Chess piece images
-    private Image[][] pieceImages = new Image[2][6]; // [color][piece type]
 
     public ChessBoard(String player1Name, String player2Name, boolean vsComputer,
-            String difficulty, String boardColor, String pieceStyle) {
+            String difficulty, String boardColor, String pieceStyle, String timeControl, int engineThreads) {
         this.player1Name = player1Name;
         this.player2Name = player2Name;
         this.vsComputer = vsComputer;
         this.difficulty = difficulty;
         this.boardColor = boardColor;
         this.pieceStyle = pieceStyle;
+        this.clock = GameClock.parse(timeControl);
+        this.engine = new Engine(Integer.getInteger("chess.hash", 64), engineThreads);
+        this.computerPlayer = new ComputerPlayer(difficulty, engine, new Random());
+        computerPlayer.setBook(PolyglotBook.getDefault());
 
         setTitle("Chess Game: " + player1Name + " vs " + player2Name);
         setDefaultCloseOperation(JFrame.DISPOSE_ON_CLOSE);
         setSize(800, 900);
         setLocationRelativeTo(null);
 
-        loadPieceImages();
         initializeComponents();
         initializeBoard();
-        setupTimers();
+        setupClock();
+
+        addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosed(WindowEvent e) {
+                gameActive = false;
+                clockTimer.stop();
+                clock.stop();
+                cancelComputerMove();
+                computerExecutor.shutdownNow();
+                engine.shutdown();
+            }
+        });
 
         setVisible(true);
         gameActive = true;
 
-        // Start player 1's timer (white's turn)
-        player1Timer.start();
-    }
-
-    private void loadPieceImages() {
-        String[] pieceSymbols = { "♟", "♞", "♝", "♜", "♛", "♚" };
-        for (int color = 0; color < 2; color++) {
-            for (int pieceType = 0; pieceType < 6; pieceType++) {
-                BufferedImage img = new BufferedImage(60, 60, BufferedImage.TYPE_INT_ARGB);
-                Graphics2D g2d = img.createGraphics();
-                g2d.setComposite(AlphaComposite.Clear);
-                g2d.fillRect(0, 0, 60, 60);
-                g2d.setComposite(AlphaComposite.SrcOver);
-                g2d.setFont(new Font("Serif", Font.BOLD, 48));
-                g2d.setColor(color == 0 ? Color.WHITE : Color.BLACK);
-                FontMetrics metrics = g2d.getFontMetrics();
-                int x = (60 - metrics.stringWidth(pieceSymbols[pieceType])) / 2;
-                int y = ((60 - metrics.getHeight()) / 2) + metrics.getAscent();
-                g2d.drawString(pieceSymbols[pieceType], x, y);
-                g2d.dispose();
-                pieceImages[color][pieceType] = img;
-            }
-        }
+        clock.start(ChessPiece.WHITE);
+        clockTimer.start();
     }
 
     private void initializeComponents() {
         setLayout(new BorderLayout());
+        setJMenuBar(createMenuBar());
 
         JPanel statusPanel = new JPanel(new BorderLayout());
         statusLabel = new JLabel("Game started! " + player1Name + "'s turn (White)");
@@ -231,8 +334,8 @@ class ChessBoard extends JFrame {
         statusPanel.add(statusLabel, BorderLayout.CENTER);
 
         JPanel timerPanel = new JPanel(new GridLayout(1, 2));
-        timerLabel1 = new JLabel(player1Name + ": 20:00");
-        timerLabel2 = new JLabel(player2Name + ": 20:00");
+        timerLabel1 = new JLabel(player1Name + ": " + GameClock.format(clock.remaining(ChessPiece.WHITE)));
+        timerLabel2 = new JLabel(player2Name + ": " + GameClock.format(clock.remaining(ChessPiece.BLACK)));
         timerLabel1.setHorizontalAlignment(JLabel.CENTER);
         timerLabel2.setHorizontalAlignment(JLabel.CENTER);
         timerPanel.add(timerLabel1);
@@ -241,164 +344,230 @@ class ChessBoard extends JFrame {
 
         add(statusPanel, BorderLayout.NORTH);
 
-        boardPanel = new JPanel();
-        boardPanel.setLayout(new GridLayout(BOARD_SIZE, BOARD_SIZE));
-
-        for (int row = 0; row < BOARD_SIZE; row++) {
-            for (int col = 0; col < BOARD_SIZE; col++) {
-                squares[row][col] = new JButton();
-                squares[row][col].setPreferredSize(new Dimension(80, 80));
-                updateSquareColor(row, col);
-                final int finalRow = row;
-                final int finalCol = col;
-                squares[row][col].addActionListener(e -> handleSquareClick(finalRow, finalCol));
-                boardPanel.add(squares[row][col]);
-            }
-        }
-
-        add(boardPanel, BorderLayout.CENTER);
+        boardView = new BoardView(boardColor, pieceStyle, this::handleSquareClick);
+        add(boardView, BorderLayout.CENTER);
     }
 
-    private void updateSquareColor(int row, int col) {
-        boolean isLightSquare = (row + col) % 2 == 0;
-        Color lightColor, darkColor;
+    private JMenuBar createMenuBar() {
+        JMenu menu = new JMenu("Game");
+        JMenuItem loadFen = new JMenuItem("Load FEN...");
+        JMenuItem copyFen = new JMenuItem("Copy FEN");
+        JMenuItem loadPgn = new JMenuItem("Load PGN...");
+        JMenuItem savePgn = new JMenuItem("Save PGN...");
+        JMenuItem undo = new JMenuItem("Undo Move");
+        JMenuItem redo = new JMenuItem("Redo Move");
+        int shortcut = Toolkit.getDefaultToolkit().getMenuShortcutKeyMaskEx();
+        undo.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_Z, shortcut));
+        redo.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_Y, shortcut));
+        undo.addActionListener(e -> undoMove());
+        redo.addActionListener(e -> redoMove());
+        loadFen.addActionListener(e -> loadFen());
+        copyFen.addActionListener(e -> copyFen());
+        loadPgn.addActionListener(e -> loadPgn());
+        savePgn.addActionListener(e -> savePgn());
+        menu.add(loadFen);
+        menu.add(copyFen);
+        menu.addSeparator();
+        menu.add(loadPgn);
+        menu.add(savePgn);
+        menu.addSeparator();
+        menu.add(undo);
+        menu.add(redo);
+        JMenu view = new JMenu("View");
+        JCheckBoxMenuItem stats = new JCheckBoxMenuItem("Engine Statistics");
+        stats.setEnabled(vsComputer && computerPlayer.usesEngine());
+        stats.addActionListener(e -> showStatsPanel(stats.isSelected()));
+        view.add(stats);
+        JMenuBar menuBar = new JMenuBar();
+        menuBar.add(menu);
+        menuBar.add(view);
+        return menuBar;
+    }
 
-        switch (boardColor) {
-            case "Blue":
-                lightColor = new Color(187, 222, 251);
-                darkColor = new Color(33, 150, 243);
-                break;
-            case "Green":
-                lightColor = new Color(200, 230, 201);
-                darkColor = new Color(76, 175, 80);
-                break;
-            case "Red":
-                lightColor = new Color(255, 205, 210);
-                darkColor = new Color(229, 115, 115);
-                break;
-            case "Purple":
-                lightColor = new Color(225, 190, 231);
-                darkColor = new Color(156, 39, 176);
-                break;
-            default:
-                lightColor = new Color(240, 217, 181);
-                darkColor = new Color(181, 136, 99);
-                break;
+    // While shown, the panel follows the engine's search depth by depth;
+    // hidden, the engine reports nothing
+    private void showStatsPanel(boolean show) {
+        if (show) {
+            add(statsPanel, BorderLayout.EAST);
+            engine.setInfoListener((depth, score, nodes, millis, hashFull, pv) -> SwingUtilities.invokeLater(() -> {
+                if (computerThinking)
+                    statsPanel.showProgress(depth, score, nodes, millis);
+            }));
+        } else {
+            remove(statsPanel);
+            engine.setInfoListener(null);
         }
-
-        squares[row][col].setBackground(isLightSquare ? lightColor : darkColor);
-        squares[row][col].setBorderPainted(false);
-        squares[row][col].setFocusPainted(false);
+        revalidate();
+        repaint();
     }
 
-    private void setupTimers() {
-        player1Timer = new javax.swing.Timer(1000, e -> {
-            player1Seconds--;
-            if (player1Seconds <= 0) {
-                player1Timer.stop();
-                gameOver(false);
-            }
-            updateTimerLabel(timerLabel1, player1Name, player1Seconds);
-        });
+    // A book move leaves the engine's statistics as they were
+    private void showEngineStats() {
+        SearchStats stats = engine.getStats();
+        if (stats == null || stats == shownStats)
+            statsPanel.showBookMove();
+        else
+            statsPanel.showStats(stats);
+        shownStats = stats;
+    }
 
-        player2Timer = new javax.swing.Timer(1000, e -> {
-            player2Seconds--;
-            if (player2Seconds <= 0) {
-                player2Timer.stop();
-                gameOver(true);
-            }
-            updateTimerLabel(timerLabel2, player2Name, player2Seconds);
-        });
+    private void loadFen() {
+        String fen = JOptionPane.showInputDialog(this, "Enter FEN:", position.toFen());
+        if (fen == null || fen.trim().isEmpty())
+            return;
+        PgnGame loaded = newGame();
+        try {
+            loaded.setStartPosition(Position.fromFen(fen));
+        } catch (RuntimeException e) {
+            JOptionPane.showMessageDialog(this, "Invalid FEN: " + fen, "Load FEN", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+        loadGame(loaded);
     }
 
-    private void updateTimerLabel(JLabel label, String playerName, int seconds) {
-        int minutes = seconds / 60;
-        int secs = seconds % 60;
-        label.setText(playerName + ": " + String.format("%02d:%02d", minutes, secs));
+    private void copyFen() {
+        String fen = position.toFen();
+        Toolkit.getDefaultToolkit().getSystemClipboard().setContents(new StringSelection(fen), null);
+        statusLabel.setText("FEN copied: " + fen);
     }
 
-    private void initializeBoard() {
-        for (int col = 0; col < BOARD_SIZE; col++) {
-            int pieceType;
-            switch (col) {
-                case 0:
-                case 7:
-                    pieceType = ChessPiece.ROOK;
-                    break;
-                case 1:
-                case 6:
-                    pieceType = ChessPiece.KNIGHT;
-                    break;
-                case 2:
-                case 5:
-                    pieceType = ChessPiece.BISHOP;
-                    break;
-                case 3:
-                    pieceType = ChessPiece.QUEEN;
-                    break;
-                case 4:
-                    pieceType = ChessPiece.KING;
-                    break;
-                default:
-                    pieceType = ChessPiece.PAWN;
-                    break;
-            }
-            board[0][col] = new ChessPiece(ChessPiece.BLACK, pieceType);
-            board[7][col] = new ChessPiece(ChessPiece.WHITE, pieceType);
+    private void loadPgn() {
+        JFileChooser chooser = new JFileChooser();
+        if (chooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION)
+            return;
+        PgnGame loaded;
+        try (PgnReader reader = PgnReader.open(chooser.getSelectedFile().getPath(), true)) {
+            loaded = reader.next();
+        } catch (IOException e) {
+            JOptionPane.showMessageDialog(this, "Could not read file: " + e.getMessage(), "Load PGN",
+                    JOptionPane.ERROR_MESSAGE);
+            return;
         }
+        if (loaded == null || loaded.error != null) {
+            JOptionPane.showMessageDialog(this, loaded == null ? "No game found" : loaded.error, "Load PGN",
+                    JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+        loadGame(loaded);
+    }
 
-        for (int col = 0; col < BOARD_SIZE; col++) {
-            board[1][col] = new ChessPiece(ChessPiece.BLACK, ChessPiece.PAWN);
-            board[6][col] = new ChessPiece(ChessPiece.WHITE, ChessPiece.PAWN);
+    private void savePgn() {
+        JFileChooser chooser = new JFileChooser();
+        chooser.setSelectedFile(new File("game.pgn"));
+        if (chooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION)
+            return;
+        try {
+            Files.write(chooser.getSelectedFile().toPath(), game.toPgn().getBytes(StandardCharsets.UTF_8));
+            statusLabel.setText("Game saved to " + chooser.getSelectedFile().getName());
+        } catch (IOException e) {
+            JOptionPane.showMessageDialog(this, "Could not save file: " + e.getMessage(), "Save PGN",
+                    JOptionPane.ERROR_MESSAGE);
         }
+    }
 
-        for (int row = 2; row < 6; row++) {
-            for (int col = 0; col < BOARD_SIZE; col++) {
-                board[row][col] = null;
-            }
+    private PgnGame newGame() {
+        PgnGame fresh = new PgnGame();
+        fresh.setTag("Event", "Casual Game");
+        fresh.setTag("Site", "Chess Game");
+        fresh.setTag("Date", LocalDate.now().format(DateTimeFormatter.ofPattern("yyyy.MM.dd")));
+        fresh.setTag("Round", "-");
+        fresh.setTag("White", player1Name);
+        fresh.setTag("Black", player2Name);
+        fresh.setTag("TimeControl", clock.toPgnTag());
+        return fresh;
+    }
+
+    // Replaces the game in progress and continues from its last position
+    private void loadGame(PgnGame loaded) {
+        cancelComputerMove();
+        if (selectedPiece != null)
+            boardView.setSelected(-1, -1);
+        selectedPiece = null;
+        selectedRow = -1;
+        selectedCol = -1;
+
+        game = loaded;
+        redoCount = 0;
+        game.setTag("White", player1Name);
+        game.setTag("Black", player2Name);
+        game.setTag("Result", "*");
+        position = game.finalPosition();
+        whiteTurn = position.sideToMove == ChessPiece.WHITE;
+        updateBoardDisplay();
+
+        gameActive = true;
+        clock.reset();
+        clock.start(position.sideToMove);
+        clockTimer.start();
+        statusLabel.setText((whiteTurn ? player1Name : player2Name) + "'s turn " +
+                (whiteTurn ? "(White)" : "(Black)"));
+
+        if (gameEnded())
+            return;
+        if (vsComputer && !whiteTurn)
+            makeComputerMove();
+    }
+
+    private void setupClock() {
+        clockTimer = new Timer(50, e -> updateClock());
+    }
+
+    private void updateClock() {
+        updateTimerLabel(timerLabel1, player1Name, ChessPiece.WHITE);
+        updateTimerLabel(timerLabel2, player2Name, ChessPiece.BLACK);
+        if (gameActive && clock.isRunning(position.sideToMove) && clock.flagged(position.sideToMove))
+            gameOver(position.sideToMove == ChessPiece.BLACK);
+    }
+
+    private void updateTimerLabel(JLabel label, String playerName, int color) {
+        long millis = clock.remaining(color);
+        // Tenths are shown under ten seconds, whole seconds above
+        long shown = millis < 10_000 ? millis / 100 : 100 + (millis + 999) / 1000;
+        if (shown != shownTimes[color]) {
+            shownTimes[color] = shown;
+            label.setText(playerName + ": " + GameClock.format(millis));
         }
+    }
 
+    private void initializeBoard() {
+        position = Position.startPosition();
+        game = newGame();
         updateBoardDisplay();
     }
 
     private void updateBoardDisplay() {
-        for (int row = 0; row < BOARD_SIZE; row++) {
-            for (int col = 0; col < BOARD_SIZE; col++) {
-                updateSquareColor(row, col);
-                if (board[row][col] != null) {
-                    ChessPiece piece = board[row][col];
-                    squares[row][col].setIcon(new ImageIcon(pieceImages[piece.getColor()][piece.getType()]));
-                } else {
-                    squares[row][col].setIcon(null);
-                }
-            }
-        }
+        boardView.setPosition(position, Moves.NONE);
     }
 
     private void handleSquareClick(int row, int col) {
         if (!gameActive)
             return;
+        if (computerThinking) {
+            statusLabel.setText(player2Name + " is thinking...");
+            return;
+        }
 
+        ChessPiece clicked = position.getPiece(row, col);
         if (selectedPiece == null) {
-            if (board[row][col] != null && ((board[row][col].getColor() == ChessPiece.WHITE && whiteTurn) ||
-                    (board[row][col].getColor() == ChessPiece.BLACK && !whiteTurn))) {
-                selectedPiece = board[row][col];
+            if (clicked != null && ((clicked.getColor() == ChessPiece.WHITE && whiteTurn) ||
+                    (clicked.getColor() == ChessPiece.BLACK && !whiteTurn))) {
+                selectedPiece = clicked;
                 selectedRow = row;
                 selectedCol = col;
-                squares[row][col].setBackground(Color.YELLOW);
+                boardView.setSelected(row, col);
                 statusLabel.setText("Selected piece at " + getSquareName(row, col));
             }
         } else {
-            if (board[row][col] != null && board[row][col].getColor() == selectedPiece.getColor()) {
-                updateSquareColor(selectedRow, selectedCol);
+            if (clicked != null && clicked.getColor() == selectedPiece.getColor()) {
+                boardView.setSelected(-1, -1);
                 selectedPiece = null;
                 selectedRow = -1;
                 selectedCol = -1;
                 if (row != selectedRow || col != selectedCol) {
-                    selectedPiece = board[row][col];
+                    selectedPiece = clicked;
                     selectedRow = row;
                     selectedCol = col;
-                    squares[row][col].setBackground(Color.YELLOW);
+                    boardView.setSelected(row, col);
                     statusLabel.setText("Selected piece at " + getSquareName(row, col));
                 } else {
                     statusLabel.setText("Piece deselected");
@@ -406,40 +575,33 @@ class ChessBoard extends JFrame {
                 return;
             }
 
-            if (isValidMove(selectedRow, selectedCol, row, col)) {
-                if (whiteTurn) {
-                    player1Timer.stop();
-                    player2Timer.start();
-                } else {
-                    player2Timer.stop();
-                    player1Timer.start();
+            int move = findLegalMove(selectedRow, selectedCol, row, col);
+            if (move != Moves.NONE) {
+                if (Moves.promotion(move) != 0) {
+                    move = Moves.withPromotion(move, promotePawn());
                 }
-
-                board[row][col] = selectedPiece;
-                board[selectedRow][selectedCol] = null;
-                updateSquareColor(selectedRow, selectedCol);
+                position.makeMove(move);
+                clock.press();
+                game.addMove(move);
+                redoCount = 0;
+                boardView.setSelected(-1, -1);
                 selectedPiece = null;
                 selectedRow = -1;
                 selectedCol = -1;
 
-                if (board[row][col].getType() == ChessPiece.PAWN &&
-                        ((board[row][col].getColor() == ChessPiece.WHITE && row == 0) ||
-                                (board[row][col].getColor() == ChessPiece.BLACK && row == 7))) {
-                    promotePawn(row, col);
-                }
-
-                updateBoardDisplay();
+                boardView.setPosition(position, move);
                 whiteTurn = !whiteTurn;
                 statusLabel.setText((whiteTurn ? player1Name : player2Name) + "'s turn " +
                         (whiteTurn ? "(White)" : "(Black)"));
 
-                if (isCheckmate(whiteTurn ? ChessPiece.WHITE : ChessPiece.BLACK)) {
-                    gameOver(!whiteTurn);
+                if (gameEnded())
                     return;
-                }
 
                 if (vsComputer && !whiteTurn) {
-                    makeComputerMove();
+                    if (ponderSearch != null && move == ponderMove)
+                        ponderHit();
+                    else
+                        makeComputerMove();
                 }
             } else {
                 statusLabel.setText("Invalid move! Try again.");
@@ -453,75 +615,17 @@ class ChessBoard extends JFrame {
         return "" + file + rank;
     }
 
-    private boolean isValidMove(int fromRow, int fromCol, int toRow, int toCol) {
-        ChessPiece piece = board[fromRow][fromCol];
-        if (piece == null)
-            return false;
-        if (board[toRow][toCol] != null && board[toRow][toCol].getColor() == piece.getColor())
-            return false;
-
-        int rowDiff = toRow - fromRow;
-        int colDiff = toCol - fromCol;
-        int absRow = Math.abs(rowDiff), absCol = Math.abs(colDiff);
-
-        switch (piece.getType()) {
-            case ChessPiece.PAWN:
-                if ((piece.getColor() == ChessPiece.WHITE && rowDiff >= 0) ||
-                        (piece.getColor() == ChessPiece.BLACK && rowDiff <= 0))
-                    return false;
-                if (absCol == 0 && absRow == 1 && board[toRow][toCol] == null)
-                    return true;
-                if (absCol == 0 && absRow == 2 &&
-                        ((piece.getColor() == ChessPiece.WHITE && fromRow == 6) ||
-                                (piece.getColor() == ChessPiece.BLACK && fromRow == 1))) {
-                    int midRow = (fromRow + toRow) / 2;
-                    return board[midRow][fromCol] == null && board[toRow][toCol] == null;
-                }
-                return absCol == 1 && absRow == 1 && board[toRow][toCol] != null;
-            case ChessPiece.KNIGHT:
-                return (absRow == 2 && absCol == 1) || (absRow == 1 && absCol == 2);
-            case ChessPiece.BISHOP:
-                return absRow == absCol && isDiagonalPathClear(fromRow, fromCol, toRow, toCol);
-            case ChessPiece.ROOK:
-                return (rowDiff == 0 || colDiff == 0) && isStraightPathClear(fromRow, fromCol, toRow, toCol);
-            case ChessPiece.QUEEN:
-                if (absRow == absCol)
-                    return isDiagonalPathClear(fromRow, fromCol, toRow, toCol);
-                return (rowDiff == 0 || colDiff == 0) && isStraightPathClear(fromRow, fromCol, toRow, toCol);
-            case ChessPiece.KING:
-                return absRow <= 1 && absCol <= 1;
-            default:
-                return false;
-        }
-    }
-
-    private boolean isStraightPathClear(int fr, int fc, int tr, int tc) {
-        int dr = Integer.compare(tr, fr);
-        int dc = Integer.compare(tc, fc);
-        int r = fr + dr, c = fc + dc;
-        while (r != tr || c != tc) {
-            if (board[r][c] != null)
-                return false;
-            r += dr;
-            c += dc;
+    private int findLegalMove(int fromRow, int fromCol, int toRow, int toCol) {
+        int from = Position.square(fromRow, fromCol), to = Position.square(toRow, toCol);
+        int count = MoveGenerator.generateLegal(position, moveBuffer);
+        for (int i = 0; i < count; i++) {
+            if (Moves.from(moveBuffer[i]) == from && Moves.to(moveBuffer[i]) == to)
+                return moveBuffer[i];
         }
-        return true;
+        return Moves.NONE;
     }
 
-    private boolean isDiagonalPathClear(int fr, int fc, int tr, int tc) {
-        int dr = Integer.compare(tr, fr);
-        int dc = Integer.compare(tc, fc);
-        int r = fr + dr, c = fc + dc;
-        while (r != tr) {
-            if (board[r][c] != null)
-                return false;
-            r += dr;
-            c += dc;
-        }
-        return true;
-    }
-
-    private void promotePawn(int row, int col) {
+    private int promotePawn() {
         String[] options = { "Queen", "Rook", "Bishop", "Knight" };
         int choice = JOptionPane.showOptionDialog(this,
                 "Choose a piece for pawn promotion:", "Pawn Promotion",
@@ -543,122 +647,203 @@ class ChessBoard extends JFrame {
                 break;
         }
 
-        board[row][col] = new ChessPiece(board[row][col].getColor(), pieceType);
+        return pieceType;
     }
 
-    private boolean isCheckmate(int color) {
-        for (int r = 0; r < 8; r++) {
-            for (int c = 0; c < 8; c++) {
-                if (board[r][c] != null && board[r][c].getType() == ChessPiece.KING &&
-                        board[r][c].getColor() == color)
-                    return false;
-            }
+    // Ends the game on checkmate, stalemate, a third occurrence of the
+    // position or fifty moves by each side without a capture or pawn move
+    private boolean gameEnded() {
+        if (!MoveGenerator.hasLegalMove(position, moveBuffer)) {
+            if (position.inCheck())
+                gameOver(position.sideToMove == ChessPiece.BLACK);
+            else
+                gameDrawn("Stalemate");
+        } else if (position.repetitions() >= 2) {
+            gameDrawn("Threefold repetition");
+        } else if (position.halfmoveClock >= 100) {
+            gameDrawn("Fifty-move rule");
+        } else {
+            return false;
         }
         return true;
     }
 
+    // Takes back the last move; against the computer, back to the human's
+    // turn. Undone moves stay available to redo until a new move is made.
+    private void undoMove() {
+        cancelComputerMove();
+        int plies = vsComputer && position.sideToMove == ChessPiece.WHITE ? 2 : 1;
+        plies = Math.min(plies, game.moveCount());
+        if (plies == 0) {
+            statusLabel.setText("No move to undo");
+            return;
+        }
+        for (int i = 0; i < plies; i++) {
+            int move = game.removeLastMove();
+            position.unmakeMove(move);
+            if (redoCount == redoMoves.length)
+                redoMoves = Arrays.copyOf(redoMoves, redoCount * 2);
+            redoMoves[redoCount++] = move;
+        }
+        historyChanged(Moves.NONE);
+    }
+
+    private void redoMove() {
+        if (redoCount == 0) {
+            statusLabel.setText("No move to redo");
+            return;
+        }
+        cancelComputerMove();
+        int plies = vsComputer && position.sideToMove == ChessPiece.WHITE ? Math.min(2, redoCount) : 1;
+        int move = Moves.NONE;
+        for (int i = 0; i < plies; i++) {
+            move = redoMoves[--redoCount];
+            position.makeMove(move);
+            game.addMove(move);
+        }
+        historyChanged(move);
+    }
+
+    // Continues the game from the position undo or redo left: a finished
+    // game is reopened, and the clock runs for the side to move
+    private void historyChanged(int move) {
+        if (selectedPiece != null)
+            boardView.setSelected(-1, -1);
+        selectedPiece = null;
+        selectedRow = -1;
+        selectedCol = -1;
+        boardView.setPosition(position, move);
+        whiteTurn = position.sideToMove == ChessPiece.WHITE;
+        game.setTag("Result", "*");
+
+        gameActive = true;
+        clock.start(position.sideToMove);
+        clockTimer.start();
+        statusLabel.setText((whiteTurn ? player1Name : player2Name) + "'s turn " +
+                (whiteTurn ? "(White)" : "(Black)"));
+
+        if (gameEnded())
+            return;
+        if (vsComputer && !whiteTurn)
+            makeComputerMove();
+    }
+
     private void gameOver(boolean whiteWins) {
         gameActive = false;
-        player1Timer.stop();
-        player2Timer.stop();
+        clock.stop();
+        clockTimer.stop();
+        updateClock();
+        cancelComputerMove();
+        game.setTag("Result", whiteWins ? "1-0" : "0-1");
         String winner = whiteWins ? player1Name : player2Name;
         JOptionPane.showMessageDialog(this, "Game Over! " + winner + " wins!", "Game Over",
                 JOptionPane.INFORMATION_MESSAGE);
         statusLabel.setText("Game Over! " + winner + " wins!");
     }
 
-    private void makeComputerMove() {
-        List<Move> validMoves = getAllValidMoves(ChessPiece.BLACK);
-        if (!validMoves.isEmpty()) {
-            Move selectedMove;
-            switch (difficulty) {
-                case "Hard":
-                    selectedMove = getBestMove(validMoves);
-                    break;
-                case "Intermediate":
-                    selectedMove = getIntermediateMove(validMoves);
-                    break;
-                default:
-                    selectedMove = validMoves.get(new Random().nextInt(validMoves.size()));
-                    break;
-            }
-
-            board[selectedMove.toRow][selectedMove.toCol] = board[selectedMove.fromRow][selectedMove.fromCol];
-            board[selectedMove.fromRow][selectedMove.fromCol] = null;
-
-            if (board[selectedMove.toRow][selectedMove.toCol].getType() == ChessPiece.PAWN && selectedMove.toRow == 7) {
-                board[selectedMove.toRow][selectedMove.toCol] = new ChessPiece(ChessPiece.BLACK, ChessPiece.QUEEN);
-            }
+    private void gameDrawn(String reason) {
+        gameActive = false;
+        clock.stop();
+        clockTimer.stop();
+        updateClock();
+        cancelComputerMove();
+        game.setTag("Result", "1/2-1/2");
+        JOptionPane.showMessageDialog(this, "Game Over! " + reason + ", the game is drawn.", "Game Over",
+                JOptionPane.INFORMATION_MESSAGE);
+        statusLabel.setText("Game Over! " + reason + ", draw.");
+    }
 
-            updateBoardDisplay();
-            whiteTurn = true;
-            player2Timer.stop();
-            player1Timer.start();
-            statusLabel.setText(player1Name + "'s turn (White)");
+    // The move is chosen on a background thread from a snapshot of the
+    // position and handed back to the event dispatch thread when done
+    private void makeComputerMove() {
+        stopPondering();
+        if (position.sideToMove != ChessPiece.BLACK || MoveGenerator.generateLegal(position, moveBuffer) == 0)
+            return;
 
-            if (isCheckmate(ChessPiece.WHITE))
-                gameOver(false);
-        }
+        Position snapshot = position.copy();
+        long budget = Search.allocateTime(clock.remaining(ChessPiece.BLACK), clock.getIncrement(), 0);
+        computerThinking = true;
+        statusLabel.setText(player2Name + " is thinking...");
+        pendingComputerMove = computerExecutor.submit(() -> {
+            int code = computerPlayer.chooseMove(snapshot, budget);
+            int predicted = computerPlayer.usesEngine() ? engine.getPonderMove(snapshot, code) : Moves.NONE;
+            SwingUtilities.invokeLater(() -> applyComputerMove(code, snapshot.key, predicted));
+        });
+    }
 
-        Timer delay = new Timer(1000, e -> {
+    // The human played the reply the engine pondered on: give the running
+    // ponder search its real budget and play whatever it comes back with
+    private void ponderHit() {
+        Future<Integer> search = ponderSearch;
+        ponderSearch = null;
+        ponderMove = Moves.NONE;
+
+        Position snapshot = position.copy();
+        computerThinking = true;
+        statusLabel.setText(player2Name + " is thinking...");
+        engine.ponderHit(Search.allocateTime(clock.remaining(ChessPiece.BLACK), clock.getIncrement(), 0));
+        pendingComputerMove = computerExecutor.submit(() -> {
+            int best = search.get();
+            int predicted = engine.getPonderMove(snapshot, best);
+            SwingUtilities.invokeLater(() -> applyComputerMove(best, snapshot.key, predicted));
+            return null;
         });
-        delay.setRepeats(false);
-        delay.start();
-    }
-
-    private List<Move> getAllValidMoves(int color) {
-        List<Move> moves = new ArrayList<>();
-        for (int r = 0; r < 8; r++) {
-            for (int c = 0; c < 8; c++) {
-                if (board[r][c] != null && board[r][c].getColor() == color) {
-                    for (int tr = 0; tr < 8; tr++) {
-                        for (int tc = 0; tc < 8; tc++) {
-                            if (isValidMove(r, c, tr, tc)) {
-                                moves.add(new Move(r, c, tr, tc));
-                            }
-                        }
-                    }
-                }
-            }
-        }
-        return moves;
     }
 
-    private Move getBestMove(List<Move> moves) {
-        return moves.isEmpty() ? null : moves.get(0);
+    // Think on the human's time about the position after the reply the
+    // engine expects; on a miss the search is dropped but its transposition
+    // table entries stay for the real search
+    private void startPondering(int predicted) {
+        Position ponderPosition = position.copy();
+        ponderPosition.makeMove(predicted);
+        ponderMove = predicted;
+        ponderSearch = computerExecutor.submit(() -> engine.ponder(ponderPosition, Search.MAX_PLY));
     }
 
-    private Move getIntermediateMove(List<Move> moves) {
-        return moves.size() > 1 ? moves.get(1) : moves.get(0);
+    private void stopPondering() {
+        if (ponderSearch != null) {
+            ponderSearch.cancel(true);
+            engine.stop();
+            ponderSearch = null;
+            ponderMove = Moves.NONE;
+        }
     }
 
-    private static class Move {
-        int fromRow, fromCol, toRow, toCol;
+    private void applyComputerMove(int move, long key, int predicted) {
+        computerThinking = false;
+        pendingComputerMove = null;
+        if (!gameActive || position.key != key || move == Moves.NONE)
+            return;
 
-        Move(int fromRow, int fromCol, int toRow, int toCol) {
-            this.fromRow = fromRow;
-            this.fromCol = fromCol;
-            this.toRow = toRow;
-            this.toCol = toCol;
+        position.makeMove(move);
+        game.addMove(move);
+        redoCount = 0;
+        if (computerPlayer.usesEngine()) {
+            statusLabel.setToolTipText(engine.report());
+            showEngineStats();
         }
-    }
-}
 
-class ChessPiece {
-    public static final int PAWN = 0, KNIGHT = 1, BISHOP = 2, ROOK = 3, QUEEN = 4, KING = 5;
-    public static final int WHITE = 0, BLACK = 1;
-    private final int color, type;
+        boardView.setPosition(position, move);
+        whiteTurn = true;
+        clock.press();
+        statusLabel.setText(player1Name + "'s turn (White)");
 
-    public ChessPiece(int color, int type) {
-        this.color = color;
-        this.type = type;
-    }
+        if (gameEnded())
+            return;
 
-    public int getColor() {
-        return color;
+        if (predicted != Moves.NONE)
+            startPondering(predicted);
     }
 
-    public int getType() {
-        return type;
+    // Futures are cancelled before the engine is stopped so a search that
+    // is just starting cannot miss the stop request
+    private void cancelComputerMove() {
+        if (pendingComputerMove != null) {
+            pendingComputerMove.cancel(true);
+            pendingComputerMove = null;
+        }
+        stopPondering();
+        engine.stop();
+        computerThinking = false;
     }
-}
\ No newline at end of file
+}
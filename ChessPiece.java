@@ -0,0 +1,30 @@
+class ChessPiece {
+    public static final int PAWN = 0, KNIGHT = 1, BISHOP = 2, ROOK = 3, QUEEN = 4, KING = 5;
+    public static final int WHITE = 0, BLACK = 1;
+    private static final ChessPiece[][] PIECES = new ChessPiece[2][6];
+    private final int color, type;
+
+    static {
+        for (int color = 0; color < 2; color++) {
+            for (int type = 0; type < 6; type++)
+                PIECES[color][type] = new ChessPiece(color, type);
+        }
+    }
+
+    public ChessPiece(int color, int type) {
+        this.color = color;
+        this.type = type;
+    }
+
+    public static ChessPiece of(int color, int type) {
+        return PIECES[color][type];
+    }
+
+    public int getColor() {
+        return color;
+    }
+
+    public int getType() {
+        return type;
+    }
+}
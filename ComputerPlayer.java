@@ -0,0 +1,72 @@
+import java.util.Random;
+
+// Move choice for the computer opponents offered in the menu. ChessBoard
+// and the headless Tournament both play through this class, so a change
+// to a level is measured exactly as it is played.
+final class ComputerPlayer {
+    static final String[] LEVELS = { "Easy", "Intermediate", "Hard" };
+
+    private final String difficulty;
+    private final Engine engine;
+    private final Random random;
+    private final int[] moves = new int[MoveGenerator.MAX_MOVES];
+    private PolyglotBook book;
+
+    ComputerPlayer(String difficulty, Engine engine, Random random) {
+        this.difficulty = difficulty;
+        this.engine = engine;
+        this.random = random;
+    }
+
+    static boolean isLevel(String name) {
+        for (String level : LEVELS) {
+            if (level.equals(name))
+                return true;
+        }
+        return false;
+    }
+
+    // Book moves are played at every level, instantly, before any search
+    void setBook(PolyglotBook book) {
+        this.book = book;
+    }
+
+    String getDifficulty() {
+        return difficulty;
+    }
+
+    // Only the engine-backed level searches, and so only it has a
+    // principal variation to ponder on
+    boolean usesEngine() {
+        return difficulty.equals("Hard");
+    }
+
+    int chooseMove(Position pos, long budget) {
+        return chooseMove(pos, budget, Search.MAX_PLY, Long.MAX_VALUE);
+    }
+
+    // Returns Moves.NONE when the side to move has no legal move
+    int chooseMove(Position pos, long budget, int maxDepth, long maxNodes) {
+        int count = MoveGenerator.generateLegal(pos, moves);
+        if (count == 0)
+            return Moves.NONE;
+        if (book != null) {
+            int move = book.probe(pos, random);
+            if (move != Moves.NONE)
+                return move;
+        }
+        switch (difficulty) {
+            case "Hard":
+                int best = engine.findBestMove(pos, budget, maxDepth, maxNodes);
+                for (int i = 0; i < count; i++) {
+                    if (moves[i] == best)
+                        return best;
+                }
+                return moves[0];
+            case "Intermediate":
+                return count > 1 ? moves[1] : moves[0];
+            default:
+                return moves[random.nextInt(count)];
+        }
+    }
+}
@@ -0,0 +1,240 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import jdk.jfr.FlightRecorder;
+
+// Lazy SMP: every thread searches the same root with its own Search and
+// they cooperate only through the shared transposition table. The main
+// thread's result is played; helpers stop as soon as it finishes.
+final class Engine {
+    // Receives the main thread's result after each completed depth
+    interface InfoListener {
+        void info(int depth, int score, long nodes, long millis, int hashFull, int[] pv);
+    }
+
+    private final SearchLimits limits = new SearchLimits();
+    private TranspositionTable tt;
+    private Search[] workers;
+    private ExecutorService helpers;
+    private volatile InfoListener infoListener;
+    private volatile SearchStats lastStats;
+
+    Engine(int hashMegabytes, int threads) {
+        tt = new TranspositionTable(hashMegabytes);
+        setThreads(threads);
+    }
+
+    static int defaultThreads() {
+        return Runtime.getRuntime().availableProcessors();
+    }
+
+    synchronized void setThreads(int threads) {
+        threads = Math.max(1, threads);
+        if (workers != null && workers.length == threads)
+            return;
+        if (helpers != null)
+            helpers.shutdownNow();
+        workers = new Search[threads];
+        for (int i = 0; i < threads; i++)
+            workers[i] = new Search(tt, i, limits);
+        helpers = threads > 1 ? Executors.newFixedThreadPool(threads - 1, r -> {
+            Thread t = new Thread(r, "engine-helper");
+            t.setDaemon(true);
+            return t;
+        }) : null;
+    }
+
+    synchronized void setHashSize(int megabytes) {
+        tt = new TranspositionTable(megabytes);
+        int threads = workers.length;
+        workers = null;
+        setThreads(threads);
+    }
+
+    int getThreads() {
+        return workers.length;
+    }
+
+    void clearHash() {
+        tt.clear();
+    }
+
+    void setInfoListener(InfoListener listener) {
+        this.infoListener = listener;
+    }
+
+    // Blocks until the search finishes; the calling thread acts as thread 0
+    int findBestMove(Position root, long timeMillis, int maxDepth) {
+        return search(root, timeMillis, maxDepth, Long.MAX_VALUE, false);
+    }
+
+    int findBestMove(Position root, long timeMillis, int maxDepth, long maxNodes) {
+        return search(root, timeMillis, maxDepth, maxNodes, false);
+    }
+
+    // Searches the position expected after the opponent's reply with no
+    // time limit, until stop() on a miss or ponderHit() on a hit
+    int ponder(Position root, int maxDepth) {
+        return search(root, 0, maxDepth, Long.MAX_VALUE, true);
+    }
+
+    void ponderHit(long timeMillis) {
+        limits.ponderHit(timeMillis);
+    }
+
+    private synchronized int search(Position root, long timeMillis, int maxDepth, long maxNodes, boolean ponder) {
+        limits.start(timeMillis, ponder, maxNodes);
+        // Cancelled through its Future before the limits were set up
+        if (Thread.currentThread().isInterrupted())
+            limits.cancel();
+        tt.newSearch();
+        // The first event object starts up Flight Recorder, which takes
+        // longer than a fast move, so none is made unless it is running
+        SearchEvent event = FlightRecorder.isInitialized() ? new SearchEvent() : null;
+        if (event != null)
+            event.begin();
+        long startNanos = System.nanoTime();
+        long start = System.currentTimeMillis();
+        InfoListener listener = infoListener;
+        workers[0].setIterationListener(listener == null ? null : () -> {
+            int[] pv = principalVariation(root, workers[0].getBestMove(), 32);
+            listener.info(getCompletedDepth(), getScore(), getNodes(), System.currentTimeMillis() - start,
+                    tt.fillPermille(), pv);
+        });
+        List<Future<?>> running = new ArrayList<>();
+        for (int i = 1; i < workers.length; i++) {
+            Search worker = workers[i];
+            running.add(helpers.submit(() -> worker.findBestMove(root, maxDepth)));
+        }
+        int best = workers[0].findBestMove(root, maxDepth);
+        // A ponder search still waiting for its hit was stopped on a miss
+        // and did not choose a move
+        boolean missed = ponder && limits.isPondering();
+        limits.finish();
+        for (Future<?> f : running) {
+            try {
+                f.get();
+            } catch (Exception e) {
+                // A failed helper only costs search speed, never the result
+            }
+        }
+        SearchStats stats = collectStats(best, System.nanoTime() - startNanos);
+        if (event != null && event.shouldCommit()) {
+            event.set(stats, missed);
+            event.commit();
+        }
+        if (!missed) {
+            lastStats = stats;
+            SearchStats.dump(stats);
+        }
+        return best;
+    }
+
+    void stop() {
+        limits.cancel();
+    }
+
+    private SearchStats collectStats(int best, long nanos) {
+        int selDepth = 0;
+        long nodes = 0, probes = 0, hits = 0, cutoffs = 0, firstMoveCutoffs = 0;
+        for (Search worker : workers) {
+            selDepth = Math.max(selDepth, worker.getSelDepth());
+            nodes += worker.getNodes();
+            probes += worker.getTableProbes();
+            hits += worker.getTableHits();
+            cutoffs += worker.getCutoffs();
+            firstMoveCutoffs += worker.getFirstMoveCutoffs();
+        }
+        Search main = workers[0];
+        return new SearchStats(main.getCompletedDepth(), selDepth, workers.length, main.getScore(), best, nodes,
+                nanos, probes, hits, cutoffs, firstMoveCutoffs, main.getBranchingFactor());
+    }
+
+    // The last search that chose a move, or null before the first one
+    SearchStats getStats() {
+        return lastStats;
+    }
+
+    // The reply the opponent is expected to play after bestMove, taken from
+    // the transposition table entry of the resulting position
+    int getPonderMove(Position root, int bestMove) {
+        int[] pv = principalVariation(root, bestMove, 2);
+        return pv.length > 1 ? pv[1] : Moves.NONE;
+    }
+
+    // Follows best moves through the transposition table from bestMove on,
+    // stopping at the first missing or illegal entry or a repeated position
+    int[] principalVariation(Position root, int bestMove, int maxLength) {
+        if (bestMove == Moves.NONE)
+            return new int[0];
+        Position pos = root.copy();
+        int[] pv = new int[maxLength];
+        int[] legal = new int[MoveGenerator.MAX_MOVES];
+        Set<Long> seen = new HashSet<>();
+        int length = 0;
+        int move = bestMove;
+        while (length < maxLength && seen.add(pos.key)) {
+            pv[length++] = move;
+            pos.makeMove(move);
+            long entry = tt.probe(pos.key);
+            move = entry == 0 ? Moves.NONE : TranspositionTable.move(entry);
+            if (move == Moves.NONE || !contains(legal, MoveGenerator.generateLegal(pos, legal), move))
+                break;
+        }
+        return Arrays.copyOf(pv, length);
+    }
+
+    private static boolean contains(int[] moves, int count, int move) {
+        for (int i = 0; i < count; i++) {
+            if (moves[i] == move)
+                return true;
+        }
+        return false;
+    }
+
+    int getScore() {
+        return workers[0].getScore();
+    }
+
+    int getCompletedDepth() {
+        return workers[0].getCompletedDepth();
+    }
+
+    long getNodes() {
+        long nodes = 0;
+        for (Search worker : workers)
+            nodes += worker.getNodes();
+        return nodes;
+    }
+
+    long getTablebaseHits() {
+        long hits = 0;
+        for (Search worker : workers)
+            hits += worker.getTablebaseHits();
+        return hits;
+    }
+
+    String report() {
+        long probes = 0, hits = 0, tbProbes = 0;
+        for (Search worker : workers) {
+            probes += worker.getTableProbes();
+            hits += worker.getTableHits();
+            tbProbes += worker.getTablebaseProbes();
+        }
+        String report = tt.report(probes, hits) + ", threads " + workers.length;
+        if (tbProbes > 0)
+            report += ", tablebase hits " + getTablebaseHits() + "/" + tbProbes;
+        return report;
+    }
+
+    void shutdown() {
+        stop();
+        if (helpers != null)
+            helpers.shutdownNow();
+    }
+}
@@ -0,0 +1,41 @@
+// Measures how search speed scales with the engine's thread count.
+// Usage: java EngineBench [millis per position] [max threads]
+public class EngineBench {
+    static final String[] POSITIONS = {
+            "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1",
+            "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+            "r4rk1/1pp1qppp/p1np1n2/2b1p1B1/2B1P1b1/P1NP1N2/1PP1QPPP/R4RK1 w - - 0 10",
+            "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1",
+            "r1bq1rk1/pp2ppbp/2np1np1/8/3NP3/2N1BP2/PPPQ2PP/R3KB1R w KQ - 3 9"
+    };
+
+    public static void main(String[] args) {
+        long millis = args.length > 0 ? Long.parseLong(args[0]) : 2000;
+        int maxThreads = args.length > 1 ? Integer.parseInt(args[1]) : Engine.defaultThreads();
+
+        System.out.printf("%-8s %14s %12s %8s%n", "threads", "nodes", "nps", "speedup");
+        double baseline = 0;
+        for (int threads = 1; threads <= maxThreads; threads = nextThreadCount(threads, maxThreads)) {
+            Engine engine = new Engine(64, threads);
+            long nodes = 0, nanos = 0;
+            for (String fen : POSITIONS) {
+                Position position = Position.fromFen(fen);
+                long start = System.nanoTime();
+                engine.findBestMove(position, millis, Search.MAX_PLY);
+                nanos += System.nanoTime() - start;
+                nodes += engine.getNodes();
+            }
+            engine.shutdown();
+            double nps = nodes * 1e9 / nanos;
+            if (threads == 1)
+                baseline = nps;
+            System.out.printf("%-8d %14d %12.0f %8.2f%n", threads, nodes, nps, nps / baseline);
+        }
+    }
+
+    private static int nextThreadCount(int threads, int maxThreads) {
+        if (threads == maxThreads)
+            return maxThreads + 1;
+        return Math.min(threads * 2, maxThreads);
+    }
+}
@@ -0,0 +1,218 @@
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.IntToLongFunction;
+
+// Throughput benchmarks for the engine hot paths on the reference
+// positions, with warmup, repeated measurement and allocation tracking.
+// Results are written as JSON in the layout of JMH's -rf json, so the
+// files can be diffed between commits or fed to the usual JMH tooling.
+//
+// Usage: java EngineMicroBench [-o results.json] [-wi 3] [-i 5] [-t 1000]
+//        [-depth 5] [name-filter]
+public class EngineMicroBench {
+    private static volatile long sink;
+
+    private final Position[] positions;
+    private final int[] buffer = new int[MoveGenerator.MAX_MOVES];
+    private final Engine engine = new Engine(16, 1);
+    private final Evaluator evaluator = new Evaluator();
+    private int searchDepth = 5;
+
+    EngineMicroBench() {
+        positions = new Position[EngineBench.POSITIONS.length];
+        for (int i = 0; i < positions.length; i++)
+            positions[i] = Position.fromFen(EngineBench.POSITIONS[i]);
+    }
+
+    private long moveGeneration(int i) {
+        return MoveGenerator.generateLegal(positions[i], buffer);
+    }
+
+    private long makeUnmake(int i) {
+        Position pos = positions[i];
+        int count = MoveGenerator.generatePseudoLegal(pos, buffer, 0, false);
+        long keys = 0;
+        for (int m = 0; m < count; m++) {
+            pos.makeMove(buffer[m]);
+            keys ^= pos.key;
+            pos.unmakeMove(buffer[m]);
+        }
+        return keys;
+    }
+
+    private long evaluation(int i) {
+        return evaluator.evaluate(positions[i]);
+    }
+
+    private long hashing(int i) {
+        return Zobrist.compute(positions[i]);
+    }
+
+    private long search(int i) {
+        engine.clearHash();
+        return engine.findBestMove(positions[i], 86_400_000L, searchDepth);
+    }
+
+    public static void main(String[] args) throws IOException {
+        String output = null, filter = "";
+        int warmups = 3, iterations = 5;
+        long iterationMillis = 1000;
+        EngineMicroBench bench = new EngineMicroBench();
+        for (int a = 0; a < args.length; a++) {
+            switch (args[a]) {
+                case "-o":
+                    output = args[++a];
+                    break;
+                case "-wi":
+                    warmups = Integer.parseInt(args[++a]);
+                    break;
+                case "-i":
+                    iterations = Integer.parseInt(args[++a]);
+                    break;
+                case "-t":
+                    iterationMillis = Long.parseLong(args[++a]);
+                    break;
+                case "-depth":
+                    bench.searchDepth = Integer.parseInt(args[++a]);
+                    break;
+                default:
+                    filter = args[a];
+                    break;
+            }
+        }
+
+        String[] names = { "moveGeneration", "makeUnmake", "evaluation", "hashing", "search" };
+        IntToLongFunction[] ops = { bench::moveGeneration, bench::makeUnmake, bench::evaluation, bench::hashing,
+                bench::search };
+        List<String> results = new ArrayList<>();
+        for (int b = 0; b < names.length; b++) {
+            if (!names[b].contains(filter))
+                continue;
+            results.add(bench.run(names[b], ops[b], warmups, iterations, iterationMillis));
+        }
+        bench.engine.shutdown();
+
+        String json = "[\n" + String.join(",\n", results) + "\n]\n";
+        if (output != null)
+            Files.write(Paths.get(output), json.getBytes("UTF-8"));
+        else
+            System.out.print(json);
+    }
+
+    private String run(String name, IntToLongFunction op, int warmups, int iterations, long iterationMillis) {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory
+                .getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        PrintStream log = System.err;
+
+        for (int w = 0; w < warmups; w++) {
+            double score = measure(op, iterationMillis)[0];
+            log.printf(Locale.ROOT, "%s warmup %d: %.1f ops/s%n", name, w + 1, score);
+        }
+
+        double[] scores = new double[iterations];
+        long totalOps = 0, totalBytes = 0, totalNanos = 0, gcCount = 0, gcMillis = 0;
+        for (int it = 0; it < iterations; it++) {
+            long gcCountBefore = gcCount(), gcTimeBefore = gcTime();
+            long bytesBefore = threads.getThreadAllocatedBytes(threadId);
+            double[] result = measure(op, iterationMillis);
+            totalBytes += threads.getThreadAllocatedBytes(threadId) - bytesBefore;
+            gcCount += gcCount() - gcCountBefore;
+            gcMillis += gcTime() - gcTimeBefore;
+            scores[it] = result[0];
+            totalOps += (long) result[1];
+            totalNanos += (long) result[2];
+            log.printf(Locale.ROOT, "%s iteration %d: %.1f ops/s%n", name, it + 1, scores[it]);
+        }
+
+        double mean = 0;
+        for (double s : scores)
+            mean += s;
+        mean /= iterations;
+        double variance = 0;
+        for (double s : scores)
+            variance += (s - mean) * (s - mean);
+        double stdev = iterations > 1 ? Math.sqrt(variance / (iterations - 1)) : 0;
+        // Roughly a 99.9% interval, as JMH reports for a handful of iterations
+        double error = iterations > 1 ? 3.29 * stdev / Math.sqrt(iterations) : Double.NaN;
+        double bytesPerOp = (double) totalBytes / Math.max(1, totalOps);
+        double allocRate = totalBytes / (1024.0 * 1024.0) / (totalNanos / 1e9);
+
+        StringBuilder raw = new StringBuilder();
+        for (int it = 0; it < iterations; it++)
+            raw.append(it == 0 ? "" : ", ").append(String.format(Locale.ROOT, "%.3f", scores[it]));
+
+        return String.format(Locale.ROOT, "  {\n"
+                + "    \"benchmark\" : \"EngineMicroBench.%s\",\n"
+                + "    \"mode\" : \"thrpt\",\n"
+                + "    \"threads\" : 1,\n"
+                + "    \"warmupIterations\" : %d,\n"
+                + "    \"measurementIterations\" : %d,\n"
+                + "    \"measurementTime\" : \"%d ms\",\n"
+                + "    \"params\" : { \"positions\" : \"%d\", \"depth\" : \"%d\" },\n"
+                + "    \"primaryMetric\" : {\n"
+                + "      \"score\" : %.3f,\n"
+                + "      \"scoreError\" : %s,\n"
+                + "      \"scoreUnit\" : \"ops/s\",\n"
+                + "      \"rawData\" : [ [ %s ] ]\n"
+                + "    },\n"
+                + "    \"secondaryMetrics\" : {\n"
+                + "      \"gc.alloc.rate\" : { \"score\" : %.3f, \"scoreUnit\" : \"MB/sec\" },\n"
+                + "      \"gc.alloc.rate.norm\" : { \"score\" : %.3f, \"scoreUnit\" : \"B/op\" },\n"
+                + "      \"gc.count\" : { \"score\" : %d, \"scoreUnit\" : \"counts\" },\n"
+                + "      \"gc.time\" : { \"score\" : %d, \"scoreUnit\" : \"ms\" }\n"
+                + "    }\n"
+                + "  }",
+                name, warmups, iterations, iterationMillis, positions.length, searchDepth, mean,
+                Double.isNaN(error) ? "\"NaN\"" : String.format(Locale.ROOT, "%.3f", error), raw, allocRate,
+                bytesPerOp, gcCount, gcMillis);
+    }
+
+    // Runs op over the positions round-robin for about iterationMillis and
+    // returns { ops per second, ops, elapsed nanos }. The clock is read once
+    // per batch of ops rather than once per op; batches start at one op and
+    // double until one takes a thousandth of the iteration, so the timer
+    // stays out of fast ops and slow ones still stop near the deadline.
+    private double[] measure(IntToLongFunction op, long iterationMillis) {
+        long iterationNanos = iterationMillis * 1_000_000L;
+        long start = System.nanoTime(), end = start + iterationNanos;
+        long ops = 0, acc = 0, now = start;
+        int batch = 1, i = 0;
+        do {
+            long batchStart = now;
+            for (int n = 0; n < batch; n++) {
+                acc += op.applyAsLong(i);
+                if (++i == positions.length)
+                    i = 0;
+            }
+            ops += batch;
+            now = System.nanoTime();
+            if (now - batchStart < iterationNanos / 1000 && batch < 1 << 24)
+                batch *= 2;
+        } while (now < end);
+        sink = acc;
+        long elapsed = now - start;
+        return new double[] { ops * 1e9 / elapsed, ops, elapsed };
+    }
+
+    private static long gcCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans())
+            count += Math.max(0, gc.getCollectionCount());
+        return count;
+    }
+
+    private static long gcTime() {
+        long time = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans())
+            time += Math.max(0, gc.getCollectionTime());
+        return time;
+    }
+}
@@ -0,0 +1,75 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntConsumer;
+
+// A fixed number of engine threads shared by many games, each thread with
+// its own single-threaded Engine. Requests are served in arrival order
+// and a game waits for its move before asking again, so every board gets
+// its turn. The time per move is the full budget only while there are
+// no more requests than threads; beyond that it is shared out so a
+// round through all waiting boards takes about the same wall time.
+final class EnginePool {
+    private static final long MIN_MILLIS = 50;
+
+    private final ThreadPoolExecutor executor;
+    private final ThreadLocal<ComputerPlayer> players;
+    private final List<Engine> engines = new ArrayList<>();
+    private final int threads;
+    private final long moveMillis;
+
+    EnginePool(int threads, int hashMegabytes, String difficulty, long moveMillis) {
+        this.threads = Math.max(1, threads);
+        this.moveMillis = moveMillis;
+        executor = new ThreadPoolExecutor(this.threads, this.threads, 0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), r -> {
+                    Thread t = new Thread(r, "engine-pool");
+                    t.setDaemon(true);
+                    return t;
+                });
+        players = ThreadLocal.withInitial(() -> {
+            Engine engine = new Engine(hashMegabytes, 1);
+            synchronized (engines) {
+                engines.add(engine);
+            }
+            ComputerPlayer player = new ComputerPlayer(difficulty, engine, new Random());
+            player.setBook(PolyglotBook.getDefault());
+            return player;
+        });
+    }
+
+    int getThreads() {
+        return threads;
+    }
+
+    // Requests waiting or being searched
+    int getLoad() {
+        return executor.getQueue().size() + executor.getActiveCount();
+    }
+
+    // The time a request starting now gets
+    long budget() {
+        return Math.max(MIN_MILLIS, moveMillis * threads / Math.max(threads, getLoad()));
+    }
+
+    // Chooses a move for a copy of pos on a pool thread and passes it to
+    // done there; Moves.NONE when there is no legal move
+    Future<?> submit(Position pos, IntConsumer done) {
+        Position copy = pos.copy();
+        return executor.submit(() -> done.accept(players.get().chooseMove(copy, budget())));
+    }
+
+    void shutdown() {
+        executor.shutdownNow();
+        synchronized (engines) {
+            for (Engine engine : engines) {
+                engine.stop();
+                engine.shutdown();
+            }
+        }
+    }
+}
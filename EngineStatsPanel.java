@@ -0,0 +1,68 @@
+import java.awt.GridLayout;
+import java.util.Locale;
+import javax.swing.BorderFactory;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+
+// Side panel for ChessBoard showing what the engine did for its last
+// move, and the running depth and node count while it searches
+final class EngineStatsPanel extends JPanel {
+    private static final long serialVersionUID = 1L;
+
+    private static final String[] NAMES = { "Depth", "Sel. depth", "Nodes", "NPS", "Branching", "TT hits",
+            "First-move cutoffs", "Time", "Threads", "Score", "Best move" };
+    private static final int DEPTH = 0, SEL_DEPTH = 1, NODES = 2, NPS = 3, BRANCHING = 4, TT_HITS = 5,
+            FIRST_MOVE = 6, TIME = 7, THREADS = 8, SCORE = 9, BEST = 10;
+
+    private final JLabel title = new JLabel("Engine");
+    private final JLabel[] values = new JLabel[NAMES.length];
+
+    EngineStatsPanel() {
+        super(new GridLayout(0, 2, 8, 2));
+        setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
+        add(title);
+        add(new JLabel());
+        for (int i = 0; i < NAMES.length; i++) {
+            add(new JLabel(NAMES[i]));
+            values[i] = new JLabel("-");
+            add(values[i]);
+        }
+    }
+
+    // Progress of a running search, after each completed depth
+    void showProgress(int depth, int score, long nodes, long millis) {
+        title.setText("Engine: searching");
+        values[DEPTH].setText(Integer.toString(depth));
+        values[NODES].setText(String.format(Locale.ROOT, "%,d", nodes));
+        values[NPS].setText(String.format(Locale.ROOT, "%,d", nodes * 1000 / Math.max(1, millis)));
+        values[TIME].setText(millis + " ms");
+        values[SCORE].setText(formatScore(score));
+    }
+
+    void showStats(SearchStats stats) {
+        title.setText("Engine: last move");
+        values[DEPTH].setText(Integer.toString(stats.depth));
+        values[SEL_DEPTH].setText(Integer.toString(stats.selDepth));
+        values[NODES].setText(String.format(Locale.ROOT, "%,d", stats.nodes));
+        values[NPS].setText(String.format(Locale.ROOT, "%,d", stats.nps()));
+        values[BRANCHING].setText(String.format(Locale.ROOT, "%.2f", stats.branchingFactor));
+        values[TT_HITS].setText(String.format(Locale.ROOT, "%.1f%%", stats.ttHitRate() * 100));
+        values[FIRST_MOVE].setText(String.format(Locale.ROOT, "%.1f%%", stats.firstMoveCutoffRate() * 100));
+        values[TIME].setText(stats.millis() + " ms");
+        values[THREADS].setText(Integer.toString(stats.threads));
+        values[SCORE].setText(formatScore(stats.score));
+        values[BEST].setText(Moves.toUci(stats.bestMove));
+    }
+
+    void showBookMove() {
+        title.setText("Engine: book move");
+    }
+
+    // Pawns from the engine's side, or moves to mate
+    private static String formatScore(int score) {
+        int plies = Search.pliesToMate(score);
+        if (plies >= 0)
+            return (score > 0 ? "mate in " : "mated in ") + (plies + 1) / 2;
+        return String.format(Locale.ROOT, "%+.2f", score / 100.0);
+    }
+}
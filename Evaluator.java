@@ -0,0 +1,209 @@
+// Static evaluation in centipawns from the side to move's point of view.
+// Material and piece-square terms are kept incrementally by Position as
+// middlegame and endgame sums and blended by game phase here; pawn
+// structure is cached per pawn configuration. One instance per search
+// thread, since the pawn cache is not shared.
+final class Evaluator {
+    static final int[] VALUES = { 100, 320, 330, 500, 900, 0 };
+    private static final int[] ENDGAME_VALUES = { 120, 300, 320, 530, 950, 0 };
+
+    // Game phase weight per piece type; 24 is the full starting material
+    static final int[] PHASE = { 0, 1, 1, 2, 4, 0 };
+    static final int MAX_PHASE = 24;
+
+    // Set -Dchess.debugEval=true to check the incremental terms against a
+    // full recompute on every call
+    static final boolean DEBUG = Boolean.getBoolean("chess.debugEval");
+
+    // Tables are written from white's side with rank 8 first, so a white
+    // piece on square sq reads entry sq ^ 56 and a black piece entry sq.
+    private static final int[][] PST = {
+            { 0, 0, 0, 0, 0, 0, 0, 0,
+                    50, 50, 50, 50, 50, 50, 50, 50,
+                    10, 10, 20, 30, 30, 20, 10, 10,
+                    5, 5, 10, 25, 25, 10, 5, 5,
+                    0, 0, 0, 20, 20, 0, 0, 0,
+                    5, -5, -10, 0, 0, -10, -5, 5,
+                    5, 10, 10, -20, -20, 10, 10, 5,
+                    0, 0, 0, 0, 0, 0, 0, 0 },
+            { -50, -40, -30, -30, -30, -30, -40, -50,
+                    -40, -20, 0, 0, 0, 0, -20, -40,
+                    -30, 0, 10, 15, 15, 10, 0, -30,
+                    -30, 5, 15, 20, 20, 15, 5, -30,
+                    -30, 0, 15, 20, 20, 15, 0, -30,
+                    -30, 5, 10, 15, 15, 10, 5, -30,
+                    -40, -20, 0, 5, 5, 0, -20, -40,
+                    -50, -40, -30, -30, -30, -30, -40, -50 },
+            { -20, -10, -10, -10, -10, -10, -10, -20,
+                    -10, 0, 0, 0, 0, 0, 0, -10,
+                    -10, 0, 5, 10, 10, 5, 0, -10,
+                    -10, 5, 5, 10, 10, 5, 5, -10,
+                    -10, 0, 10, 10, 10, 10, 0, -10,
+                    -10, 10, 10, 10, 10, 10, 10, -10,
+                    -10, 5, 0, 0, 0, 0, 5, -10,
+                    -20, -10, -10, -10, -10, -10, -10, -20 },
+            { 0, 0, 0, 0, 0, 0, 0, 0,
+                    5, 10, 10, 10, 10, 10, 10, 5,
+                    -5, 0, 0, 0, 0, 0, 0, -5,
+                    -5, 0, 0, 0, 0, 0, 0, -5,
+                    -5, 0, 0, 0, 0, 0, 0, -5,
+                    -5, 0, 0, 0, 0, 0, 0, -5,
+                    -5, 0, 0, 0, 0, 0, 0, -5,
+                    0, 0, 0, 5, 5, 0, 0, 0 },
+            { -20, -10, -10, -5, -5, -10, -10, -20,
+                    -10, 0, 0, 0, 0, 0, 0, -10,
+                    -10, 0, 5, 5, 5, 5, 0, -10,
+                    -5, 0, 5, 5, 5, 5, 0, -5,
+                    0, 0, 5, 5, 5, 5, 0, -5,
+                    -10, 5, 5, 5, 5, 5, 0, -10,
+                    -10, 0, 5, 0, 0, 0, 0, -10,
+                    -20, -10, -10, -5, -5, -10, -10, -20 },
+            { -30, -40, -40, -50, -50, -40, -40, -30,
+                    -30, -40, -40, -50, -50, -40, -40, -30,
+                    -30, -40, -40, -50, -50, -40, -40, -30,
+                    -30, -40, -40, -50, -50, -40, -40, -30,
+                    -20, -30, -30, -40, -40, -30, -30, -20,
+                    -10, -20, -20, -20, -20, -20, -20, -10,
+                    20, 20, 0, 0, 0, 0, 20, 20,
+                    20, 30, 10, 0, 0, 10, 30, 20 } };
+
+    private static final int[] PAWN_ENDGAME = {
+            0, 0, 0, 0, 0, 0, 0, 0,
+            80, 80, 80, 80, 80, 80, 80, 80,
+            50, 50, 50, 50, 50, 50, 50, 50,
+            30, 30, 30, 30, 30, 30, 30, 30,
+            20, 20, 20, 20, 20, 20, 20, 20,
+            10, 10, 10, 10, 10, 10, 10, 10,
+            5, 5, 5, 5, 5, 5, 5, 5,
+            0, 0, 0, 0, 0, 0, 0, 0 };
+
+    private static final int[] KING_ENDGAME = {
+            -50, -40, -30, -20, -20, -30, -40, -50,
+            -30, -20, -10, 0, 0, -10, -20, -30,
+            -30, -10, 20, 30, 30, 20, -10, -30,
+            -30, -10, 30, 40, 40, 30, -10, -30,
+            -30, -10, 30, 40, 40, 30, -10, -30,
+            -30, -10, 20, 30, 30, 20, -10, -30,
+            -30, -30, 0, 0, 0, 0, -30, -30,
+            -50, -30, -30, -30, -30, -30, -30, -50 };
+
+    // Material plus piece-square value per piece code and square, signed
+    // for white, as summed incrementally by Position
+    static final int[][] MG = new int[12][64];
+    static final int[][] EG = new int[12][64];
+
+    private static final int DOUBLED_MG = -10, DOUBLED_EG = -20;
+    private static final int ISOLATED_MG = -10, ISOLATED_EG = -15;
+    private static final int[] PASSED_MG = { 0, 5, 10, 15, 25, 40, 60, 0 };
+    private static final int[] PASSED_EG = { 0, 10, 20, 35, 60, 100, 150, 0 };
+
+    private static final long[] ADJACENT_FILES = new long[8];
+    // Squares in front of a pawn, on its own and the adjacent files
+    private static final long[][] PASSED_MASK = new long[2][64];
+
+    static {
+        for (int color = 0; color < 2; color++) {
+            int sign = color == ChessPiece.WHITE ? 1 : -1;
+            int flip = color == ChessPiece.WHITE ? 56 : 0;
+            for (int type = 0; type < 6; type++) {
+                int[] endgameTable = type == ChessPiece.PAWN ? PAWN_ENDGAME
+                        : type == ChessPiece.KING ? KING_ENDGAME : PST[type];
+                for (int sq = 0; sq < 64; sq++) {
+                    MG[Position.piece(color, type)][sq] = sign * (VALUES[type] + PST[type][sq ^ flip]);
+                    EG[Position.piece(color, type)][sq] = sign * (ENDGAME_VALUES[type] + endgameTable[sq ^ flip]);
+                }
+            }
+        }
+        for (int file = 0; file < 8; file++) {
+            if (file > 0)
+                ADJACENT_FILES[file] |= Attacks.FILE_A << (file - 1);
+            if (file < 7)
+                ADJACENT_FILES[file] |= Attacks.FILE_A << (file + 1);
+        }
+        for (int sq = 0; sq < 64; sq++) {
+            int rank = sq >>> 3, file = sq & 7;
+            long files = ADJACENT_FILES[file] | (Attacks.FILE_A << file);
+            long above = rank == 7 ? 0L : -1L << ((rank + 1) * 8);
+            long below = rank == 0 ? 0L : -1L >>> ((8 - rank) * 8);
+            PASSED_MASK[ChessPiece.WHITE][sq] = files & above;
+            PASSED_MASK[ChessPiece.BLACK][sq] = files & below;
+        }
+    }
+
+    private static final int PAWN_TABLE_SIZE = 1 << 14;
+    private final long[] pawnKeys = new long[PAWN_TABLE_SIZE];
+    private final int[] pawnScores = new int[PAWN_TABLE_SIZE];
+
+    int evaluate(Position pos) {
+        if (DEBUG)
+            verify(pos);
+        int pawns = pawnStructure(pos);
+        int mg = pos.mgScore + (short) pawns;
+        int eg = pos.egScore + (pawns >> 16);
+        int phase = Math.min(pos.phase, MAX_PHASE);
+        int score = (mg * phase + eg * (MAX_PHASE - phase)) / MAX_PHASE;
+        return pos.sideToMove == ChessPiece.WHITE ? score : -score;
+    }
+
+    // Middlegame score in the low 16 bits, endgame score in the high 16
+    private int pawnStructure(Position pos) {
+        int index = (int) pos.pawnKey & (PAWN_TABLE_SIZE - 1);
+        if (pawnKeys[index] == pos.pawnKey && pos.pawnKey != 0)
+            return pawnScores[index];
+        int packed = computePawnStructure(pos);
+        pawnKeys[index] = pos.pawnKey;
+        pawnScores[index] = packed;
+        return packed;
+    }
+
+    private static int computePawnStructure(Position pos) {
+        int mg = 0, eg = 0;
+        for (int color = 0; color < 2; color++) {
+            int sign = color == ChessPiece.WHITE ? 1 : -1;
+            long own = pos.pieces[color][ChessPiece.PAWN];
+            long enemy = pos.pieces[color ^ 1][ChessPiece.PAWN];
+            for (int file = 0; file < 8; file++) {
+                int count = Long.bitCount(own & (Attacks.FILE_A << file));
+                if (count > 1) {
+                    mg += sign * DOUBLED_MG * (count - 1);
+                    eg += sign * DOUBLED_EG * (count - 1);
+                }
+                if (count > 0 && (own & ADJACENT_FILES[file]) == 0) {
+                    mg += sign * ISOLATED_MG * count;
+                    eg += sign * ISOLATED_EG * count;
+                }
+            }
+            for (long bb = own; bb != 0; bb &= bb - 1) {
+                int sq = Long.numberOfTrailingZeros(bb);
+                if ((PASSED_MASK[color][sq] & enemy) == 0) {
+                    int rank = color == ChessPiece.WHITE ? sq >>> 3 : 7 - (sq >>> 3);
+                    mg += sign * PASSED_MG[rank];
+                    eg += sign * PASSED_EG[rank];
+                }
+            }
+        }
+        return (mg & 0xFFFF) | (eg << 16);
+    }
+
+    private void verify(Position pos) {
+        int mg = 0, eg = 0, phase = 0;
+        long pawnKey = 0;
+        for (int sq = 0; sq < 64; sq++) {
+            int p = pos.board[sq];
+            if (p == Position.EMPTY)
+                continue;
+            mg += MG[p][sq];
+            eg += EG[p][sq];
+            phase += PHASE[Position.typeOf(p)];
+            if (Position.typeOf(p) == ChessPiece.PAWN)
+                pawnKey ^= Zobrist.PIECE[p][sq];
+        }
+        if (mg != pos.mgScore || eg != pos.egScore || phase != pos.phase || pawnKey != pos.pawnKey)
+            throw new IllegalStateException(String.format(
+                    "Incremental evaluation out of sync: mg %d/%d, eg %d/%d, phase %d/%d, pawn key %s",
+                    pos.mgScore, mg, pos.egScore, eg, pos.phase, phase, pawnKey == pos.pawnKey ? "ok" : "wrong"));
+        int cached = pawnStructure(pos);
+        if (cached != computePawnStructure(pos))
+            throw new IllegalStateException("Pawn structure cache entry is stale");
+    }
+}
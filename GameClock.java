@@ -0,0 +1,102 @@
+import java.util.Locale;
+
+// A two-sided chess clock on System.nanoTime. Time is charged from the
+// moment a side's clock starts to the moment it presses, so nothing is
+// lost to timer ticks or event-thread delays; a display only reads it.
+// Fischer adds the increment after every move; Bronstein gives back what
+// the move used, up to the delay.
+final class GameClock {
+    static final int FISCHER = 0, BRONSTEIN = 1;
+    static final String[] TIME_CONTROLS = { "20 min", "10 min", "15+10", "5+3", "3+2", "1+0", "5 d3", "15 d5" };
+
+    private final long baseMillis, incrementMillis;
+    private final int mode;
+    private final long[] remainingNanos = new long[2];
+    private int running = -1;
+    private long turnStart;
+
+    GameClock(long baseMillis, long incrementMillis, int mode) {
+        this.baseMillis = baseMillis;
+        this.incrementMillis = incrementMillis;
+        this.mode = mode;
+        reset();
+    }
+
+    // "20 min" or "20", "5+3" for Fischer and "5 d3" for Bronstein:
+    // minutes, then seconds per move
+    static GameClock parse(String control) {
+        String[] parts = control.trim().replace(" min", "").split("\\s*(\\+|\\s+d)\\s*");
+        long base = Math.round(Double.parseDouble(parts[0]) * 60_000);
+        long increment = parts.length > 1 ? Math.round(Double.parseDouble(parts[1]) * 1000) : 0;
+        return new GameClock(base, increment, control.contains("d") ? BRONSTEIN : FISCHER);
+    }
+
+    void reset() {
+        remainingNanos[0] = remainingNanos[1] = baseMillis * 1_000_000;
+        running = -1;
+    }
+
+    long getIncrement() {
+        return incrementMillis;
+    }
+
+    // The PGN TimeControl tag value, in seconds
+    String toPgnTag() {
+        String tag = Long.toString(baseMillis / 1000);
+        return incrementMillis == 0 ? tag
+                : tag + "+" + (incrementMillis % 1000 == 0 ? Long.toString(incrementMillis / 1000)
+                        : String.format(Locale.ROOT, "%.1f", incrementMillis / 1000.0));
+    }
+
+    // Starts color's time, stopping the other's without any increment
+    void start(int color) {
+        stop();
+        running = color;
+        turnStart = System.nanoTime();
+    }
+
+    void stop() {
+        if (running >= 0)
+            remainingNanos[running] -= System.nanoTime() - turnStart;
+        running = -1;
+    }
+
+    // The running side has moved: charge its time, credit its increment
+    // or delay, and start the other side
+    void press() {
+        if (running < 0)
+            return;
+        int mover = running;
+        long used = System.nanoTime() - turnStart;
+        stop();
+        if (remainingNanos[mover] > 0) {
+            long credit = incrementMillis * 1_000_000;
+            remainingNanos[mover] += mode == BRONSTEIN ? Math.min(used, credit) : credit;
+        }
+        start(mover ^ 1);
+    }
+
+    boolean isRunning(int color) {
+        return running == color;
+    }
+
+    // Milliseconds left for color, live while its clock runs
+    long remaining(int color) {
+        long nanos = remainingNanos[color];
+        if (running == color)
+            nanos -= System.nanoTime() - turnStart;
+        return Math.max(0, nanos / 1_000_000);
+    }
+
+    boolean flagged(int color) {
+        return remaining(color) == 0;
+    }
+
+    // Minutes and seconds, with tenths under ten seconds
+    static String format(long millis) {
+        if (millis < 10_000)
+            return String.format(Locale.ROOT, "%d.%d", millis / 1000, millis / 100 % 10);
+        long seconds = (millis + 999) / 1000;
+        return String.format(Locale.ROOT, "%02d:%02d", seconds / 60, seconds % 60);
+    }
+}
@@ -0,0 +1,177 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Locale;
+
+// A game collection in the binary format of GameRecordWriter, as
+// <name>.games, with its position index as <name>.idx. Games are read by
+// offset, so looking up a position touches only the index entries for
+// its key and the records of the games that reach it.
+//
+// Usage:
+//   java GameDatabase convert <games.pgn> <name>   build from PGN
+//   java GameDatabase find <name> [limit] <fen>    games reaching a position
+public class GameDatabase implements Closeable {
+    private final FileChannel games;
+    private final PositionIndex index;
+    private ByteBuffer buffer = ByteBuffer.allocate(4096);
+
+    private GameDatabase(FileChannel games, PositionIndex index) {
+        this.games = games;
+        this.index = index;
+    }
+
+    static GameDatabase open(String name) throws IOException {
+        FileChannel games = FileChannel.open(gameFile(name), StandardOpenOption.READ);
+        ByteBuffer magic = ByteBuffer.allocate(4);
+        games.read(magic, 0);
+        if (magic.getInt(0) != GameRecordWriter.MAGIC) {
+            games.close();
+            throw new IOException("Not a game file: " + gameFile(name));
+        }
+        try {
+            return new GameDatabase(games, PositionIndex.open(indexFile(name)));
+        } catch (IOException e) {
+            games.close();
+            throw e;
+        }
+    }
+
+    static Path gameFile(String name) {
+        return Paths.get(name + ".games");
+    }
+
+    static Path indexFile(String name) {
+        return Paths.get(name + ".idx");
+    }
+
+    // Offsets of the games in which the position occurs
+    long[] find(Position pos) {
+        return index.find(pos.key);
+    }
+
+    synchronized PgnGame read(long offset) throws IOException {
+        ByteBuffer length = ByteBuffer.allocate(4);
+        readFully(length, offset);
+        int size = length.getInt(0);
+        if (buffer.capacity() < size)
+            buffer = ByteBuffer.allocate(Math.max(size, buffer.capacity() * 2));
+        buffer.clear().limit(size);
+        readFully(buffer, offset + 4);
+        buffer.flip();
+
+        PgnGame game = new PgnGame();
+        int moves = buffer.getShort() & 0xFFFF;
+        int result = buffer.get() & 0xFF;
+        int tags = buffer.get() & 0xFF;
+        for (int i = 0; i < tags; i++) {
+            String name = readString();
+            game.setTag(name, readString());
+        }
+        game.setTag("Result", GameRecordWriter.RESULTS[result]);
+        Position pos = game.startPosition();
+        for (int i = 0; i < moves; i++) {
+            int move = Moves.fromCompact(pos, buffer.getShort() & 0xFFFF);
+            game.addMove(move);
+            pos.makeMove(move);
+        }
+        return game;
+    }
+
+    private String readString() {
+        int length = buffer.getShort() & 0xFFFF;
+        String s = new String(buffer.array(), buffer.position(), length, StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + length);
+        return s;
+    }
+
+    private void readFully(ByteBuffer target, long position) throws IOException {
+        while (target.hasRemaining()) {
+            int n = games.read(target, position);
+            if (n < 0)
+                throw new IOException("Game record past the end of the file at " + position);
+            position += n;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        index.close();
+        games.close();
+    }
+
+    // Games with unreadable movetext are left out
+    static long[] convert(String pgn, String name) throws IOException {
+        long converted = 0, skipped = 0;
+        try (PgnReader reader = PgnReader.open(pgn, true);
+                GameRecordWriter writer = new GameRecordWriter(gameFile(name), indexFile(name))) {
+            PgnGame game;
+            while ((game = reader.next()) != null) {
+                if (game.error != null) {
+                    skipped++;
+                    continue;
+                }
+                writer.write(game);
+                converted++;
+            }
+        }
+        return new long[] { converted, skipped };
+    }
+
+    // The first ply at which the game reaches the position, or -1
+    static int plyReaching(PgnGame game, long key) {
+        Position pos = game.startPosition();
+        for (int ply = 0;; ply++) {
+            if (pos.key == key)
+                return ply;
+            if (ply == game.moveCount())
+                return -1;
+            pos.makeMove(game.move(ply));
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length >= 3 && args[0].equals("convert")) {
+            long start = System.nanoTime();
+            long[] counts = convert(args[1], args[2]);
+            double seconds = (System.nanoTime() - start) / 1e9;
+            long pgnSize = Files.size(Paths.get(args[1]));
+            long gameSize = Files.size(gameFile(args[2])), indexSize = Files.size(indexFile(args[2]));
+            System.out.printf(Locale.ROOT, "Games: %d, skipped: %d, %.2f s, %.0f games/min%n", counts[0], counts[1],
+                    seconds, counts[0] * 60 / seconds);
+            System.out.printf(Locale.ROOT, "PGN %d bytes, games %d bytes (%.1f%%), index %d bytes%n", pgnSize,
+                    gameSize, gameSize * 100.0 / Math.max(1, pgnSize), indexSize);
+        } else if (args.length >= 3 && args[0].equals("find")) {
+            int limit = 20, fenStart = 2;
+            if (args[2].matches("\\d+") && args.length > 3) {
+                limit = Integer.parseInt(args[2]);
+                fenStart = 3;
+            }
+            Position pos = Position.fromFen(String.join(" ", Arrays.copyOfRange(args, fenStart, args.length)));
+            try (GameDatabase db = open(args[1])) {
+                long start = System.nanoTime();
+                long[] offsets = db.find(pos);
+                long lookup = System.nanoTime() - start;
+                for (int i = 0; i < Math.min(limit, offsets.length); i++) {
+                    PgnGame game = db.read(offsets[i]);
+                    System.out.printf("%s - %s %s, %s %s, ply %d%n", game.tags.getOrDefault("White", "?"),
+                            game.tags.getOrDefault("Black", "?"), game.getResult(),
+                            game.tags.getOrDefault("Event", "?"), game.tags.getOrDefault("Date", "?"),
+                            plyReaching(game, pos.key));
+                }
+                System.out.printf(Locale.ROOT, "%d games, lookup %.1f us%n", offsets.length, lookup / 1e3);
+            }
+        } else {
+            System.err.println("Usage: java GameDatabase convert <games.pgn> <name>");
+            System.err.println("       java GameDatabase find <name> [limit] <fen>");
+            System.exit(2);
+        }
+    }
+}
@@ -0,0 +1,214 @@
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Load test for a running GameServer. It first opens many games and
+// leaves them idle, each a connection waiting on the server, then has a
+// number of clients play random legal moves as fast as the server
+// answers for a while. It reports the latency of every move round trip,
+// computer reply included, and the server's own counters and heap use
+// with the idle games open and under load.
+//
+// Usage: java GameLoadTest [-host 127.0.0.1] [-port 7878] [-idle 10000]
+//        [-active 1000] [-seconds 30] [-seed 1]
+//
+// Run the server with a cheap level (-level Easy) to measure the server
+// itself; with -level Hard the latency is mostly engine queueing.
+public class GameLoadTest {
+    private String host = "127.0.0.1";
+    private int port = 7878, idle = 10_000, active = 1000, seconds = 30;
+    private long seed = 1;
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        GameLoadTest t = new GameLoadTest();
+        for (int a = 0; a < args.length; a++) {
+            switch (args[a]) {
+                case "-host":
+                    t.host = args[++a];
+                    break;
+                case "-port":
+                    t.port = Integer.parseInt(args[++a]);
+                    break;
+                case "-idle":
+                    t.idle = Integer.parseInt(args[++a]);
+                    break;
+                case "-active":
+                    t.active = Integer.parseInt(args[++a]);
+                    break;
+                case "-seconds":
+                    t.seconds = Integer.parseInt(args[++a]);
+                    break;
+                case "-seed":
+                    t.seed = Long.parseLong(args[++a]);
+                    break;
+                default:
+                    System.err.println("Unknown option: " + args[a]);
+                    System.exit(2);
+            }
+        }
+        t.run();
+    }
+
+    private void run() throws IOException, InterruptedException {
+        Connection control = new Connection(host, port);
+        List<Connection> idleGames = new ArrayList<>();
+        long start = System.nanoTime();
+        try {
+            for (int i = 0; i < idle; i++) {
+                Connection c = new Connection(host, port);
+                idleGames.add(c);
+                String reply = c.request("new white");
+                if (!reply.equals("ok"))
+                    throw new IOException("Unexpected reply to new: " + reply);
+            }
+            System.out.printf(Locale.ROOT, "Opened %d idle games in %.1f s%n", idle, (System.nanoTime() - start) / 1e9);
+            System.out.println("Server with idle games: " + control.request("stats"));
+
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+            Player[] players = new Player[active];
+            ExecutorService threads = GameServer.threadPerTask("load-client");
+            for (int i = 0; i < active; i++) {
+                players[i] = new Player(new Random(seed * 1_000_003L + i), deadline);
+                threads.execute(players[i]);
+            }
+            Thread.sleep(TimeUnit.SECONDS.toMillis(seconds) / 2);
+            System.out.println("Server under load: " + control.request("stats"));
+            threads.shutdown();
+            threads.awaitTermination(seconds + 60, TimeUnit.SECONDS);
+            report(players, seconds);
+        } finally {
+            for (Connection c : idleGames)
+                c.close();
+            control.close();
+        }
+    }
+
+    private static void report(Player[] players, int seconds) {
+        int total = 0, games = 0, errors = 0;
+        for (Player p : players) {
+            total += p.count;
+            games += p.games;
+            errors += p.errors;
+        }
+        long[] all = new long[total];
+        int n = 0;
+        for (Player p : players) {
+            System.arraycopy(p.latencies, 0, all, n, p.count);
+            n += p.count;
+        }
+        Arrays.sort(all);
+        System.out.printf(Locale.ROOT, "Moves: %d in %d s, %.1f moves/s, %d games finished, %d errors%n", total,
+                seconds, total / (double) seconds, games, errors);
+        if (total > 0)
+            System.out.printf(Locale.ROOT, "Latency ms: p50 %.2f, p90 %.2f, p99 %.2f, max %.2f%n",
+                    percentile(all, 0.50), percentile(all, 0.90), percentile(all, 0.99), all[total - 1] / 1e6);
+    }
+
+    private static double percentile(long[] sorted, double p) {
+        return sorted[Math.min(sorted.length - 1, (int) (p * sorted.length))] / 1e6;
+    }
+
+    // One game connection with the server's greeting already read
+    private static final class Connection {
+        final Socket socket;
+        final InputStream in;
+        final OutputStream out;
+        final StringBuilder line = new StringBuilder();
+
+        Connection(String host, int port) throws IOException {
+            socket = new Socket(host, port);
+            socket.setTcpNoDelay(true);
+            in = new BufferedInputStream(socket.getInputStream(), 256);
+            out = socket.getOutputStream();
+            readReply();
+        }
+
+        String request(String command) throws IOException {
+            GameServer.send(out, command);
+            return readReply();
+        }
+
+        private String readReply() throws IOException {
+            if (!GameServer.readLine(in, line))
+                throw new IOException("Server closed the connection");
+            return line.toString();
+        }
+
+        void close() {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // Nothing to do
+            }
+        }
+    }
+
+    // Plays white with random legal moves, game after game, until the
+    // deadline, timing each move until the server's reply
+    private final class Player implements Runnable {
+        final Random random;
+        final long deadline;
+        long[] latencies = new long[256];
+        int count, games, errors;
+
+        Player(Random random, long deadline) {
+            this.random = random;
+            this.deadline = deadline;
+        }
+
+        @Override
+        public void run() {
+            Connection c = null;
+            try {
+                c = new Connection(host, port);
+                int[] moves = new int[MoveGenerator.MAX_MOVES];
+                Position pos = null;
+                while (System.nanoTime() < deadline) {
+                    if (pos == null) {
+                        if (!c.request("new white").equals("ok")) {
+                            errors++;
+                            return;
+                        }
+                        pos = Position.startPosition();
+                    }
+                    int move = moves[random.nextInt(MoveGenerator.generateLegal(pos, moves))];
+                    pos.makeMove(move);
+                    long start = System.nanoTime();
+                    String reply = c.request("move " + Moves.toUci(move));
+                    record(System.nanoTime() - start);
+                    String[] tokens = reply.split(" ");
+                    if (tokens[0].equals("move") && tokens.length == 2) {
+                        pos.makeMove(Moves.fromUci(pos, tokens[1]));
+                    } else {
+                        if (tokens[0].equals("error"))
+                            errors++;
+                        else
+                            games++;
+                        pos = null;
+                    }
+                }
+                c.request("quit");
+            } catch (IOException e) {
+                errors++;
+            } finally {
+                if (c != null)
+                    c.close();
+            }
+        }
+
+        private void record(long nanos) {
+            if (count == latencies.length)
+                latencies = Arrays.copyOf(latencies, count * 2);
+            latencies[count++] = nanos;
+        }
+    }
+}
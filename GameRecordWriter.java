@@ -0,0 +1,106 @@
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+// Writes games in the compact binary format read by GameDatabase and
+// builds its position index alongside. The game file is a magic number
+// followed by one record per game:
+//
+//   int    length of the rest of the record
+//   short  number of moves
+//   byte   result, an index into RESULTS
+//   byte   number of tags, then per tag a name and a value, each a short
+//          byte length and UTF-8 bytes; Result is not repeated here and
+//          a FEN tag gives the start position
+//   short  per move, in Moves.toCompact form
+//
+// All numbers are big-endian. Offsets in the index point at the length.
+final class GameRecordWriter implements Closeable {
+    static final int MAGIC = 0x43475231; // "CGR1"
+    static final String[] RESULTS = { "*", "1-0", "0-1", "1/2-1/2" };
+
+    private final DataOutputStream out;
+    private final PositionIndex.Builder index;
+    private final ByteArrayOutputStream recordBytes = new ByteArrayOutputStream(1024);
+    private final DataOutputStream record = new DataOutputStream(recordBytes);
+    private long offset;
+    private long games;
+
+    GameRecordWriter(Path gameFile, Path indexFile) throws IOException {
+        out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(gameFile), 1 << 16));
+        index = new PositionIndex.Builder(indexFile);
+        out.writeInt(MAGIC);
+        offset = 4;
+    }
+
+    long getGameCount() {
+        return games;
+    }
+
+    // Returns the offset of the game's record
+    long write(PgnGame game) throws IOException {
+        if (game.moveCount() > 0xFFFF)
+            throw new IllegalArgumentException("Game too long to store: " + game.moveCount() + " moves");
+        recordBytes.reset();
+        record.writeShort(game.moveCount());
+        int result = 0;
+        for (int i = 0; i < RESULTS.length; i++) {
+            if (RESULTS[i].equals(game.getResult()))
+                result = i;
+        }
+        record.writeByte(result);
+        int tags = 0;
+        for (String name : game.tags.keySet()) {
+            if (!name.equals("Result"))
+                tags++;
+        }
+        record.writeByte(Math.min(tags, 255));
+        int written = 0;
+        for (Map.Entry<String, String> tag : game.tags.entrySet()) {
+            if (tag.getKey().equals("Result"))
+                continue;
+            if (written++ >= 255)
+                break;
+            writeString(tag.getKey());
+            writeString(tag.getValue());
+        }
+
+        Position pos = game.startPosition();
+        index.add(pos.key, offset);
+        for (int i = 0; i < game.moveCount(); i++) {
+            int move = game.move(i);
+            record.writeShort(Moves.toCompact(move));
+            pos.makeMove(move);
+            index.add(pos.key, offset);
+        }
+
+        long start = offset;
+        out.writeInt(recordBytes.size());
+        recordBytes.writeTo(out);
+        offset += 4 + recordBytes.size();
+        games++;
+        return start;
+    }
+
+    private void writeString(String s) throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        int length = Math.min(bytes.length, 0xFFFF);
+        // Cut before a character rather than inside its UTF-8 sequence
+        while (length < bytes.length && (bytes[length] & 0xC0) == 0x80)
+            length--;
+        record.writeShort(length);
+        record.write(bytes, 0, length);
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+        index.finish();
+    }
+}
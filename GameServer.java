@@ -0,0 +1,257 @@
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Headless game server: many games against the computer from one JVM,
+// one per TCP connection on localhost. Each connection is served by its
+// own thread, a virtual thread where the runtime has them, so an idle
+// game costs a parked thread and a ServerGame rather than a platform
+// thread. Engine moves come from one EnginePool of platform threads that
+// every game shares, and a connection simply waits for its move.
+//
+// Usage: java GameServer [-port 7878] [-threads N] [-hash 16]
+//        [-level Hard] [-millis 1000]
+//
+// The protocol is one ASCII line per command and one line per reply:
+//   new [white|black] [fen <FEN>]  start a game, the client playing the
+//                                  given side; replies "ok", or the
+//                                  computer's first move
+//   move <uci>                     replies "move <uci>" with the
+//                                  computer's answer, followed by
+//                                  " result <score> <reason>" when that
+//                                  ended the game, or just the result
+//                                  when the client's move ended it
+//   fen | stats | ping | quit
+// Errors are "error <reason>" and leave the game as it was.
+public class GameServer {
+    private static final int BACKLOG = 4096;
+    private static final int BUFFER_SIZE = 256;
+    private static final int MAX_LINE = 512;
+
+    private final EnginePool engines;
+    private final AtomicInteger connections = new AtomicInteger();
+    private final AtomicInteger games = new AtomicInteger();
+    private final AtomicLong moves = new AtomicLong();
+
+    GameServer(EnginePool engines) {
+        this.engines = engines;
+    }
+
+    public static void main(String[] args) throws IOException {
+        int port = 7878, threads = Engine.defaultThreads(), hash = 16;
+        String level = "Hard";
+        long millis = 1000;
+        for (int a = 0; a < args.length; a++) {
+            switch (args[a]) {
+                case "-port":
+                    port = Integer.parseInt(args[++a]);
+                    break;
+                case "-threads":
+                    threads = Integer.parseInt(args[++a]);
+                    break;
+                case "-hash":
+                    hash = Integer.parseInt(args[++a]);
+                    break;
+                case "-level":
+                    level = args[++a];
+                    break;
+                case "-millis":
+                    millis = Long.parseLong(args[++a]);
+                    break;
+                default:
+                    System.err.println("Unknown option: " + args[a]);
+                    System.exit(2);
+            }
+        }
+        if (!ComputerPlayer.isLevel(level)) {
+            System.err.println("Level must be one of " + String.join(", ", ComputerPlayer.LEVELS));
+            System.exit(2);
+        }
+        ExecutorService connectionThreads = threadPerTask("connection");
+        try (ServerSocket server = new ServerSocket(port, BACKLOG, InetAddress.getLoopbackAddress())) {
+            System.out.printf(Locale.ROOT, "Serving on %s:%d, %s level, %d engine threads, %d ms per move, %s%n",
+                    server.getInetAddress().getHostAddress(), server.getLocalPort(), level, threads, millis,
+                    hasVirtualThreads() ? "virtual threads" : "platform threads");
+            GameServer gameServer = new GameServer(new EnginePool(threads, hash, level, millis));
+            while (true) {
+                Socket socket = server.accept();
+                connectionThreads.execute(() -> gameServer.serve(socket));
+            }
+        }
+    }
+
+    static boolean hasVirtualThreads() {
+        try {
+            Thread.class.getMethod("ofVirtual");
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    // A new virtual thread per task on Java 21 and later, looked up
+    // reflectively so the server still builds and runs on Java 17, where
+    // it falls back to platform threads with a small stack
+    static ExecutorService threadPerTask(String name) {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException | UnsupportedOperationException e) {
+            return Executors.newCachedThreadPool(r -> {
+                Thread t = new Thread(null, r, name, 256 * 1024);
+                t.setDaemon(true);
+                return t;
+            });
+        }
+    }
+
+    void serve(Socket socket) {
+        connections.incrementAndGet();
+        ServerGame game = null;
+        try (Socket s = socket) {
+            s.setTcpNoDelay(true);
+            // Small buffers and no Reader: the per-connection footprint is
+            // what limits how many games one heap holds
+            InputStream in = new BufferedInputStream(s.getInputStream(), BUFFER_SIZE);
+            OutputStream out = s.getOutputStream();
+            int[] buffer = new int[MoveGenerator.MAX_MOVES];
+            StringBuilder line = new StringBuilder();
+            send(out, "hello chess-server");
+            while (readLine(in, line)) {
+                String[] tokens = line.toString().trim().split("\\s+");
+                String reply;
+                try {
+                    switch (tokens[0]) {
+                        case "new":
+                            ServerGame started = newGame(tokens);
+                            if (started == null) {
+                                reply = "error usage: new [white|black] [fen <FEN>]";
+                                break;
+                            }
+                            if (game == null)
+                                games.incrementAndGet();
+                            game = started;
+                            game.update(buffer);
+                            reply = game.isOver() ? game.describeResult()
+                                    : game.isClientToMove() ? "ok" : engineReply(game, buffer);
+                            break;
+                        case "move":
+                            reply = game == null ? "error no game"
+                                    : game.isOver() ? "error game over"
+                                    : tokens.length < 2 ? "error usage: move <uci>"
+                                    : clientMove(game, tokens[1], buffer);
+                            break;
+                        case "fen":
+                            reply = game == null ? "error no game" : "fen " + game.position.toFen();
+                            break;
+                        case "stats":
+                            reply = stats();
+                            break;
+                        case "ping":
+                            reply = "pong";
+                            break;
+                        case "quit":
+                            send(out, "bye");
+                            return;
+                        default:
+                            reply = tokens[0].isEmpty() ? "error empty command"
+                                    : "error unknown command " + tokens[0];
+                            break;
+                    }
+                } catch (RuntimeException e) {
+                    // A bug in one command must not take the connection down
+                    reply = "error " + e;
+                }
+                send(out, reply);
+            }
+        } catch (IOException e) {
+            // The client went away; its game goes with it
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            if (game != null)
+                games.decrementAndGet();
+            connections.decrementAndGet();
+        }
+    }
+
+    private static ServerGame newGame(String[] tokens) {
+        int color = ChessPiece.WHITE, i = 1;
+        if (i < tokens.length && (tokens[i].equals("white") || tokens[i].equals("black")))
+            color = tokens[i++].equals("white") ? ChessPiece.WHITE : ChessPiece.BLACK;
+        Position pos = Position.startPosition();
+        if (i < tokens.length) {
+            if (!tokens[i].equals("fen") || i + 1 >= tokens.length)
+                return null;
+            try {
+                pos = Position.fromFen(String.join(" ", Arrays.copyOfRange(tokens, i + 1, tokens.length)));
+            } catch (RuntimeException e) {
+                return null;
+            }
+        }
+        return new ServerGame(pos, color);
+    }
+
+    private String clientMove(ServerGame game, String uci, int[] buffer) throws InterruptedException {
+        if (!game.isClientToMove())
+            return "error not your move";
+        int move = Moves.fromUci(game.position, uci);
+        if (move == Moves.NONE)
+            return "error illegal move " + uci;
+        game.play(move, buffer);
+        moves.incrementAndGet();
+        return game.isOver() ? game.describeResult() : engineReply(game, buffer);
+    }
+
+    // Waits, without holding any engine thread, for the pool's move
+    private String engineReply(ServerGame game, int[] buffer) throws InterruptedException {
+        int[] chosen = new int[1];
+        try {
+            engines.submit(game.position, move -> chosen[0] = move).get();
+        } catch (ExecutionException e) {
+            return "error engine failed: " + e.getCause();
+        }
+        if (chosen[0] == Moves.NONE)
+            return "error engine found no move";
+        game.play(chosen[0], buffer);
+        moves.incrementAndGet();
+        String reply = "move " + Moves.toUci(chosen[0]);
+        return game.isOver() ? reply + " " + game.describeResult() : reply;
+    }
+
+    private String stats() {
+        Runtime runtime = Runtime.getRuntime();
+        return String.format(Locale.ROOT, "stats connections %d games %d moves %d engine-threads %d engine-load %d"
+                + " heap-used-mb %d heap-max-mb %d", connections.get(), games.get(), moves.get(),
+                engines.getThreads(), engines.getLoad(), (runtime.totalMemory() - runtime.freeMemory()) >> 20,
+                runtime.maxMemory() >> 20);
+    }
+
+    // Reads one line into line without its terminator; false at end of
+    // stream. Lines longer than MAX_LINE are cut off.
+    static boolean readLine(InputStream in, StringBuilder line) throws IOException {
+        line.setLength(0);
+        int c;
+        while ((c = in.read()) >= 0 && c != '\n') {
+            if (c != '\r' && line.length() < MAX_LINE)
+                line.append((char) c);
+        }
+        return c >= 0 || line.length() > 0;
+    }
+
+    static void send(OutputStream out, String line) throws IOException {
+        out.write((line + "\n").getBytes(StandardCharsets.US_ASCII));
+        out.flush();
+    }
+}
@@ -0,0 +1,33 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+// One completed iteration of the main search thread, for JDK Flight
+// Recorder; costs nothing unless a recording enables it
+@Name("chess.SearchIteration")
+@Label("Search Iteration")
+@Category({ "Chess", "Engine" })
+@Description("One completed depth of iterative deepening on the main search thread")
+final class IterationEvent extends jdk.jfr.Event {
+    @Label("Depth")
+    int depth;
+
+    @Label("Selective Depth")
+    int selDepth;
+
+    @Label("Score")
+    @Description("Centipawns from the side to move, or a mate or tablebase score")
+    int score;
+
+    @Label("Nodes")
+    @Description("Nodes the main thread searched in this iteration")
+    long nodes;
+
+    @Label("Branching Factor")
+    @Description("The b of nodes = b^depth for the search so far")
+    double branchingFactor;
+
+    @Label("Best Move")
+    String bestMove;
+}
@@ -0,0 +1,186 @@
+// Generates moves for the side to move into a caller-supplied int buffer of
+// encoded moves (see Moves), so the search can reuse one buffer per ply.
+final class MoveGenerator {
+    static final int MAX_MOVES = 256;
+
+    private static final int[] PROMOTIONS = { ChessPiece.QUEEN, ChessPiece.KNIGHT, ChessPiece.ROOK,
+            ChessPiece.BISHOP };
+
+    private MoveGenerator() {
+    }
+
+    // Pseudo-legal moves: every reachable target, ignoring whether the own
+    // king is left in check. Returns the new end index of the buffer.
+    static int generatePseudoLegal(Position pos, int[] moves, int count, boolean capturesOnly) {
+        int us = pos.sideToMove, them = us ^ 1;
+        long own = pos.occupancy[us];
+        long enemy = pos.occupancy[them];
+        long targets = capturesOnly ? enemy : ~own;
+
+        count = generatePawnMoves(pos, moves, count, capturesOnly, ~0L);
+        for (int type = ChessPiece.KNIGHT; type <= ChessPiece.KING; type++) {
+            for (long bb = pos.pieces[us][type]; bb != 0; bb &= bb - 1) {
+                int from = Long.numberOfTrailingZeros(bb);
+                for (long to = Attacks.piece(type, from, pos.occupied) & targets; to != 0; to &= to - 1)
+                    moves[count++] = Moves.encode(from, Long.numberOfTrailingZeros(to));
+            }
+        }
+        if (!capturesOnly)
+            count = generateCastling(pos, moves, count);
+        return count;
+    }
+
+    // Check evasions: king steps, and with a single checker its capture or
+    // a block. Pinned pieces and king steps into attacked squares are not
+    // filtered, as with generatePseudoLegal.
+    static int generateEvasions(Position pos, int[] moves, int count) {
+        int us = pos.sideToMove;
+        int king = pos.kingSquare(us);
+        for (long to = Attacks.KING[king] & ~pos.occupancy[us]; to != 0; to &= to - 1)
+            moves[count++] = Moves.encode(king, Long.numberOfTrailingZeros(to));
+        long checkers = pos.checkers;
+        if ((checkers & (checkers - 1)) != 0)
+            return count;
+        long targets = checkers | Attacks.BETWEEN[king][Long.numberOfTrailingZeros(checkers)];
+        count = generatePawnMoves(pos, moves, count, false, targets);
+        for (int type = ChessPiece.KNIGHT; type <= ChessPiece.QUEEN; type++) {
+            for (long bb = pos.pieces[us][type]; bb != 0; bb &= bb - 1) {
+                int from = Long.numberOfTrailingZeros(bb);
+                for (long to = Attacks.piece(type, from, pos.occupied) & targets; to != 0; to &= to - 1)
+                    moves[count++] = Moves.encode(from, Long.numberOfTrailingZeros(to));
+            }
+        }
+        return count;
+    }
+
+    // Only moves landing on targets, except that en passant counts when
+    // the pawn it takes is a target
+    private static int generatePawnMoves(Position pos, int[] moves, int count, boolean capturesOnly,
+            long targets) {
+        int us = pos.sideToMove;
+        long pawns = pos.pieces[us][ChessPiece.PAWN];
+        long enemy = pos.occupancy[us ^ 1] & targets;
+        long empty = ~pos.occupied;
+        int forward = us == ChessPiece.WHITE ? 8 : -8;
+        long lastRank = us == ChessPiece.WHITE ? Attacks.RANK_8 : Attacks.RANK_1;
+
+        for (long bb = pawns; bb != 0; bb &= bb - 1) {
+            int from = Long.numberOfTrailingZeros(bb);
+            long attacks = Attacks.PAWN[us][from];
+            for (long to = attacks & enemy; to != 0; to &= to - 1)
+                count = addPawnMove(moves, count, from, Long.numberOfTrailingZeros(to), lastRank, capturesOnly);
+            if (pos.epSquare != Position.EMPTY && (attacks & (1L << pos.epSquare)) != 0
+                    && (targets & ((1L << pos.epSquare) | (1L << (pos.epSquare - forward)))) != 0)
+                moves[count++] = Moves.encode(from, pos.epSquare, 0, Moves.EN_PASSANT);
+
+            int push = from + forward;
+            if ((empty & (1L << push)) == 0)
+                continue;
+            if ((targets & (1L << push)) != 0) {
+                if ((lastRank & (1L << push)) != 0) {
+                    count = addPawnMove(moves, count, from, push, lastRank, capturesOnly);
+                    continue;
+                }
+                if (!capturesOnly)
+                    moves[count++] = Moves.encode(from, push);
+            }
+            // The double push can block a check the single push does not
+            long startRank = us == ChessPiece.WHITE ? Attacks.RANK_2 : Attacks.RANK_7;
+            int doublePush = push + forward;
+            if (!capturesOnly && (startRank & (1L << from)) != 0 && (empty & targets & (1L << doublePush)) != 0)
+                moves[count++] = Moves.encode(from, doublePush, 0, Moves.DOUBLE_PUSH);
+        }
+        return count;
+    }
+
+    // Quiet-move generation still wants every promotion; captures-only
+    // generation keeps just the queen promotion as a tactical move.
+    private static int addPawnMove(int[] moves, int count, int from, int to, long lastRank, boolean capturesOnly) {
+        if ((lastRank & (1L << to)) == 0) {
+            moves[count++] = Moves.encode(from, to);
+            return count;
+        }
+        int promotions = capturesOnly ? 1 : PROMOTIONS.length;
+        for (int i = 0; i < promotions; i++)
+            moves[count++] = Moves.encode(from, to, PROMOTIONS[i], Moves.NORMAL);
+        return count;
+    }
+
+    private static int generateCastling(Position pos, int[] moves, int count) {
+        int us = pos.sideToMove, them = us ^ 1;
+        int rights = pos.castlingRights;
+        int kingSide = us == ChessPiece.WHITE ? Position.WHITE_KINGSIDE : Position.BLACK_KINGSIDE;
+        int queenSide = us == ChessPiece.WHITE ? Position.WHITE_QUEENSIDE : Position.BLACK_QUEENSIDE;
+        if ((rights & (kingSide | queenSide)) == 0)
+            return count;
+        int king = us == ChessPiece.WHITE ? 4 : 60;
+        // Rights from a malformed position must not move a missing rook
+        int rook = Position.piece(us, ChessPiece.ROOK);
+        if (pos.board[king] != Position.piece(us, ChessPiece.KING) || pos.isAttacked(king, them))
+            return count;
+        if ((rights & kingSide) != 0 && pos.board[king + 3] == rook && (pos.occupied & (3L << (king + 1))) == 0
+                && !pos.isAttacked(king + 1, them))
+            moves[count++] = Moves.encode(king, king + 2, 0, Moves.CASTLE);
+        if ((rights & queenSide) != 0 && pos.board[king - 4] == rook && (pos.occupied & (7L << (king - 3))) == 0
+                && !pos.isAttacked(king - 1, them))
+            moves[count++] = Moves.encode(king, king - 2, 0, Moves.CASTLE);
+        return count;
+    }
+
+    // Legal moves only; the buffer must hold at least MAX_MOVES entries.
+    // Candidates are checked against the enemy attack map and the pins
+    // instead of being played; only en passant is tried on the board.
+    static int generateLegal(Position pos, int[] moves) {
+        int count = pos.inCheck() ? generateEvasions(pos, moves, 0) : generatePseudoLegal(pos, moves, 0, false);
+        int us = pos.sideToMove;
+        int king = pos.kingSquare(us);
+        // The king does not shield squares behind it from sliders
+        long danger = pos.attackMap(us ^ 1, pos.occupied & ~(1L << king));
+        int legal = 0;
+        for (int i = 0; i < count; i++) {
+            int move = moves[i];
+            if (isLegal(pos, move, king, danger))
+                moves[legal++] = move;
+        }
+        return legal;
+    }
+
+    // Whether the side to move has any legal move, stopping at the first
+    static boolean hasLegalMove(Position pos, int[] moves) {
+        int count = pos.inCheck() ? generateEvasions(pos, moves, 0) : generatePseudoLegal(pos, moves, 0, false);
+        int us = pos.sideToMove;
+        int king = pos.kingSquare(us);
+        long danger = pos.attackMap(us ^ 1, pos.occupied & ~(1L << king));
+        for (int i = 0; i < count; i++) {
+            if (isLegal(pos, moves[i], king, danger))
+                return true;
+        }
+        return false;
+    }
+
+    // Whether a pseudo-legal move could leave the own king attacked; out
+    // of check, only king moves, en passant and pinned pieces can
+    static boolean needsLegalityCheck(Position pos, int move) {
+        int from = Moves.from(move);
+        return pos.checkers != 0 || (pos.pinned & (1L << from)) != 0 || Moves.flag(move) == Moves.EN_PASSANT
+                || Position.typeOf(pos.board[from]) == ChessPiece.KING;
+    }
+
+    private static boolean isLegal(Position pos, int move, int king, long danger) {
+        int from = Moves.from(move);
+        // Castling has checked the squares the king passes; this is the last
+        if (from == king)
+            return (danger & (1L << Moves.to(move))) == 0;
+        if (Moves.flag(move) == Moves.EN_PASSANT)
+            return isLegal(pos, move);
+        return (pos.pinned & (1L << from)) == 0 || (Attacks.LINE[king][from] & (1L << Moves.to(move))) != 0;
+    }
+
+    static boolean isLegal(Position pos, int move) {
+        int us = pos.sideToMove;
+        pos.makeMove(move);
+        boolean legal = !pos.isAttacked(pos.kingSquare(us), us ^ 1);
+        pos.unmakeMove(move);
+        return legal;
+    }
+}
@@ -0,0 +1,201 @@
+// Moves are packed into an int: from (6 bits), to (6 bits), promotion piece
+// type (3 bits, 0 = none) and a special-move flag (2 bits).
+final class Moves {
+    static final int NONE = 0;
+
+    static final int NORMAL = 0, DOUBLE_PUSH = 1, EN_PASSANT = 2, CASTLE = 3;
+
+    private Moves() {
+    }
+
+    static int encode(int from, int to) {
+        return from | (to << 6);
+    }
+
+    static int encode(int from, int to, int promotion, int flag) {
+        return from | (to << 6) | (promotion << 12) | (flag << 15);
+    }
+
+    static int from(int move) {
+        return move & 63;
+    }
+
+    static int to(int move) {
+        return (move >>> 6) & 63;
+    }
+
+    static int promotion(int move) {
+        return (move >>> 12) & 7;
+    }
+
+    static int flag(int move) {
+        return (move >>> 15) & 3;
+    }
+
+    static int withPromotion(int move, int type) {
+        return (move & ~(7 << 12)) | (type << 12);
+    }
+
+    // 16-bit form for stored games: the flag is dropped since it follows
+    // from the position the move is played in
+    static int toCompact(int move) {
+        return move & 0x7FFF;
+    }
+
+    static int fromCompact(Position pos, int compact) {
+        int from = from(compact), to = to(compact);
+        int type = Position.typeOf(pos.board[from]);
+        int flag = NORMAL;
+        if (type == ChessPiece.KING && Math.abs(to - from) == 2)
+            flag = CASTLE;
+        else if (type == ChessPiece.PAWN && Math.abs(to - from) == 16)
+            flag = DOUBLE_PUSH;
+        else if (type == ChessPiece.PAWN && to == pos.epSquare)
+            flag = EN_PASSANT;
+        return compact | (flag << 15);
+    }
+
+    static String toUci(int move) {
+        if (move == NONE)
+            return "0000";
+        String s = squareName(from(move)) + squareName(to(move));
+        int promotion = promotion(move);
+        return promotion == 0 ? s : s + "pnbrqk".charAt(promotion);
+    }
+
+    // Finds the legal move in pos written in UCI notation, or NONE
+    static int fromUci(Position pos, String uci) {
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        int count = MoveGenerator.generateLegal(pos, moves);
+        for (int i = 0; i < count; i++) {
+            if (toUci(moves[i]).equals(uci))
+                return moves[i];
+        }
+        return NONE;
+    }
+
+    static String toSan(Position pos, int move) {
+        return toSan(pos, move, new int[MoveGenerator.MAX_MOVES]);
+    }
+
+    // Standard algebraic notation for a legal move in pos, with the
+    // minimal disambiguation and a check or mate suffix
+    static String toSan(Position pos, int move, int[] buffer) {
+        int from = from(move), to = to(move);
+        int type = Position.typeOf(pos.board[from]);
+        StringBuilder san = new StringBuilder(8);
+        if (flag(move) == CASTLE) {
+            san.append(to > from ? "O-O" : "O-O-O");
+        } else {
+            boolean capture = pos.board[to] != Position.EMPTY || flag(move) == EN_PASSANT;
+            if (type == ChessPiece.PAWN) {
+                if (capture)
+                    san.append((char) ('a' + (from & 7)));
+            } else {
+                san.append("PNBRQK".charAt(type));
+                boolean ambiguous = false, sameFile = false, sameRank = false;
+                int count = MoveGenerator.generateLegal(pos, buffer);
+                for (int i = 0; i < count; i++) {
+                    int other = from(buffer[i]);
+                    if (other == from || to(buffer[i]) != to || pos.board[other] != pos.board[from])
+                        continue;
+                    ambiguous = true;
+                    sameFile |= (other & 7) == (from & 7);
+                    sameRank |= (other >>> 3) == (from >>> 3);
+                }
+                if (ambiguous && (!sameFile || sameRank))
+                    san.append((char) ('a' + (from & 7)));
+                if (sameFile)
+                    san.append((char) ('1' + (from >>> 3)));
+            }
+            if (capture)
+                san.append('x');
+            san.append(squareName(to));
+            if (promotion(move) != 0)
+                san.append('=').append("PNBRQK".charAt(promotion(move)));
+        }
+        pos.makeMove(move);
+        if (pos.inCheck())
+            san.append(MoveGenerator.generateLegal(pos, buffer) == 0 ? '#' : '+');
+        pos.unmakeMove(move);
+        return san.toString();
+    }
+
+    static int fromSan(Position pos, String san) {
+        return fromSan(pos, san, new int[MoveGenerator.MAX_MOVES]);
+    }
+
+    // Finds the legal move in pos written in SAN, or NONE when there is no
+    // such move or the notation is ambiguous. Accepts the usual sloppiness:
+    // 0-0 castling, missing or extra capture marks, "e8Q" promotions and
+    // trailing check marks and annotations.
+    static int fromSan(Position pos, String san, int[] buffer) {
+        int end = san.length();
+        while (end > 0 && "+#!?".indexOf(san.charAt(end - 1)) >= 0)
+            end--;
+        if (end < 2)
+            return NONE;
+        String body = san.substring(0, end);
+        int count = MoveGenerator.generatePseudoLegal(pos, buffer, 0, false);
+
+        if (body.equals("O-O") || body.equals("0-0") || body.equals("O-O-O") || body.equals("0-0-0")) {
+            boolean kingside = body.length() == 3;
+            for (int i = 0; i < count; i++) {
+                int m = buffer[i];
+                if (flag(m) == CASTLE && (to(m) > from(m)) == kingside && MoveGenerator.isLegal(pos, m))
+                    return m;
+            }
+            return NONE;
+        }
+
+        int promotion = 0;
+        char last = body.charAt(end - 1);
+        if ("NBRQ".indexOf(last) >= 0) {
+            promotion = "PNBRQK".indexOf(last);
+            end -= body.charAt(end - 2) == '=' ? 2 : 1;
+        }
+        if (end < 2)
+            return NONE;
+        int toFile = body.charAt(end - 2) - 'a', toRank = body.charAt(end - 1) - '1';
+        if (toFile < 0 || toFile > 7 || toRank < 0 || toRank > 7)
+            return NONE;
+        int to = toRank * 8 + toFile;
+
+        int start = 0, type = ChessPiece.PAWN;
+        int piece = "PNBRQK".indexOf(body.charAt(0));
+        if (piece >= 0) {
+            type = piece;
+            start = 1;
+        }
+        int fromFile = -1, fromRank = -1;
+        for (int i = start; i < end - 2; i++) {
+            char c = body.charAt(i);
+            if (c >= 'a' && c <= 'h')
+                fromFile = c - 'a';
+            else if (c >= '1' && c <= '8')
+                fromRank = c - '1';
+            else if (c != 'x' && c != ':' && c != '-')
+                return NONE;
+        }
+
+        int found = NONE;
+        for (int i = 0; i < count; i++) {
+            int m = buffer[i], from = from(m);
+            if (to(m) != to || promotion(m) != promotion || flag(m) == CASTLE
+                    || Position.typeOf(pos.board[from]) != type)
+                continue;
+            if ((fromFile >= 0 && (from & 7) != fromFile) || (fromRank >= 0 && (from >>> 3) != fromRank))
+                continue;
+            if (!MoveGenerator.isLegal(pos, m))
+                continue;
+            if (found != NONE)
+                return NONE;
+            found = m;
+        }
+        return found;
+    }
+
+    static String squareName(int sq) {
+        return "" + (char) ('a' + (sq & 7)) + (char) ('1' + (sq >>> 3));
+    }
+}
@@ -0,0 +1,147 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+
+// External sort of (key, value) long pairs by unsigned key and then value.
+// Pairs are collected in sorted runs of bounded size, full runs spill to
+// temporary files, and merge() streams everything back in order, so
+// sorting needs the same memory for any number of pairs.
+final class PairSorter {
+    interface Sink {
+        void accept(long key, long value) throws IOException;
+    }
+
+    private static final int RUN_SIZE = 1 << 21;
+
+    private final Path directory;
+    private final long[] keys = new long[RUN_SIZE];
+    private final long[] values = new long[RUN_SIZE];
+    private int size;
+    private final List<Path> runs = new ArrayList<>();
+
+    // Runs are written to directory
+    PairSorter(Path directory) {
+        this.directory = directory;
+    }
+
+    void add(long key, long value) throws IOException {
+        if (size == RUN_SIZE)
+            spill();
+        keys[size] = key;
+        values[size++] = value;
+    }
+
+    // Feeds all pairs to sink in order and deletes the runs
+    void merge(Sink sink) throws IOException {
+        spill();
+        PriorityQueue<Run> queue = new PriorityQueue<>();
+        try {
+            for (Path run : runs) {
+                Run r = new Run(run);
+                if (r.advance())
+                    queue.add(r);
+                else
+                    r.in.close();
+            }
+            while (!queue.isEmpty()) {
+                Run r = queue.poll();
+                sink.accept(r.key, r.value);
+                if (r.advance())
+                    queue.add(r);
+                else
+                    r.in.close();
+            }
+        } finally {
+            for (Run r : queue)
+                r.in.close();
+            for (Path run : runs)
+                Files.deleteIfExists(run);
+            runs.clear();
+        }
+    }
+
+    private void spill() throws IOException {
+        if (size == 0)
+            return;
+        sort(0, size - 1);
+        Path run = Files.createTempFile(directory, "pairs", ".run");
+        runs.add(run);
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(run), 1 << 16))) {
+            for (int i = 0; i < size; i++) {
+                out.writeLong(keys[i]);
+                out.writeLong(values[i]);
+            }
+        }
+        size = 0;
+    }
+
+    // Quicksort of the parallel arrays
+    private void sort(int lo, int hi) {
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            long pivotKey = keys[mid], pivotValue = values[mid];
+            int i = lo, j = hi;
+            while (i <= j) {
+                while (compare(keys[i], values[i], pivotKey, pivotValue) < 0)
+                    i++;
+                while (compare(keys[j], values[j], pivotKey, pivotValue) > 0)
+                    j--;
+                if (i <= j) {
+                    long k = keys[i], v = values[i];
+                    keys[i] = keys[j];
+                    values[i] = values[j];
+                    keys[j] = k;
+                    values[j] = v;
+                    i++;
+                    j--;
+                }
+            }
+            // Recurse into the smaller side to bound the stack depth
+            if (j - lo < hi - i) {
+                sort(lo, j);
+                lo = i;
+            } else {
+                sort(i, hi);
+                hi = j;
+            }
+        }
+    }
+
+    static int compare(long key1, long value1, long key2, long value2) {
+        int c = Long.compareUnsigned(key1, key2);
+        return c != 0 ? c : Long.compare(value1, value2);
+    }
+
+    private static final class Run implements Comparable<Run> {
+        final DataInputStream in;
+        long key, value;
+
+        Run(Path path) throws IOException {
+            in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), 1 << 16));
+        }
+
+        boolean advance() throws IOException {
+            try {
+                key = in.readLong();
+                value = in.readLong();
+                return true;
+            } catch (EOFException e) {
+                return false;
+            }
+        }
+
+        @Override
+        public int compareTo(Run other) {
+            return compare(key, value, other.key, other.value);
+        }
+    }
+}
@@ -0,0 +1,140 @@
+// Perft: counts leaf nodes of the legal move tree to verify the move
+// generator against published results and to measure its speed.
+//
+// Usage:
+//   java Perft [--deep] [--no-bulk]            run the reference suite
+//   java Perft count <depth> [fen] [--no-bulk] count one position
+//   java Perft divide <depth> [fen]            counts per root move
+//
+// Bulk counting stops one ply early and counts the legal moves of each
+// frontier node instead of making them; --no-bulk visits every leaf.
+public class Perft {
+    private static final String START = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1";
+
+    // FEN, then published node counts for depth 1, 2, ...
+    private static final Object[][] SUITE = {
+            { START, new long[] { 20, 400, 8902, 197281, 4865609, 119060324 } },
+            { "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+                    new long[] { 48, 2039, 97862, 4085603, 193690690 } },
+            { "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1",
+                    new long[] { 14, 191, 2812, 43238, 674624, 11030083, 178633661 } },
+            { "r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1",
+                    new long[] { 6, 264, 9467, 422333, 15833292 } },
+            { "rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8",
+                    new long[] { 44, 1486, 62379, 2103487, 89941194 } },
+            { "r4rk1/1pp1qppp/p1np1n2/2b1p1B1/2B1P1b1/P1NP1N2/1PP1QPPP/R4RK1 w - - 0 10",
+                    new long[] { 46, 2079, 89890, 3894594, 164075551 } } };
+
+    // Without --deep, depths whose expected count exceeds this are skipped
+    private static final long QUICK_LIMIT = 20_000_000L;
+
+    private final int[][] buffers = new int[64][MoveGenerator.MAX_MOVES];
+    private final boolean bulk;
+
+    Perft(boolean bulk) {
+        this.bulk = bulk;
+    }
+
+    long count(Position pos, int depth) {
+        return perft(pos, depth, 0);
+    }
+
+    private long perft(Position pos, int depth, int ply) {
+        if (depth == 0)
+            return 1;
+        int[] moves = buffers[ply];
+        int count = MoveGenerator.generateLegal(pos, moves);
+        if (bulk && depth == 1)
+            return count;
+        long nodes = 0;
+        for (int i = 0; i < count; i++) {
+            pos.makeMove(moves[i]);
+            nodes += perft(pos, depth - 1, ply + 1);
+            pos.unmakeMove(moves[i]);
+        }
+        return nodes;
+    }
+
+    long divide(Position pos, int depth) {
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        int count = MoveGenerator.generateLegal(pos, moves);
+        long total = 0;
+        for (int i = 0; i < count; i++) {
+            pos.makeMove(moves[i]);
+            long nodes = perft(pos, depth - 1, 1);
+            pos.unmakeMove(moves[i]);
+            System.out.println(Moves.toUci(moves[i]) + ": " + nodes);
+            total += nodes;
+        }
+        System.out.println();
+        System.out.println("Moves: " + count);
+        System.out.println("Nodes: " + total);
+        return total;
+    }
+
+    public static void main(String[] args) {
+        boolean bulk = true, deep = false;
+        java.util.List<String> rest = new java.util.ArrayList<>();
+        for (String arg : args) {
+            if (arg.equals("--no-bulk"))
+                bulk = false;
+            else if (arg.equals("--deep"))
+                deep = true;
+            else
+                rest.add(arg);
+        }
+        Perft perft = new Perft(bulk);
+
+        if (rest.isEmpty()) {
+            System.exit(perft.runSuite(deep) ? 0 : 1);
+        }
+        String mode = rest.get(0);
+        int depth = rest.size() > 1 ? Integer.parseInt(rest.get(1)) : 5;
+        String fen = rest.size() > 2 ? String.join(" ", rest.subList(2, rest.size())) : START;
+        Position pos = Position.fromFen(fen);
+        long start = System.nanoTime();
+        long nodes;
+        if (mode.equals("divide")) {
+            nodes = perft.divide(pos, depth);
+        } else if (mode.equals("count")) {
+            nodes = perft.count(pos, depth);
+            System.out.println("Nodes: " + nodes);
+        } else {
+            System.err.println("Unknown mode: " + mode);
+            System.exit(2);
+            return;
+        }
+        report(nodes, System.nanoTime() - start);
+    }
+
+    private boolean runSuite(boolean deep) {
+        boolean ok = true;
+        long totalNodes = 0, totalNanos = 0;
+        for (Object[] entry : SUITE) {
+            String fen = (String) entry[0];
+            long[] expected = (long[]) entry[1];
+            System.out.println(fen);
+            for (int depth = 1; depth <= expected.length; depth++) {
+                if (!deep && expected[depth - 1] > QUICK_LIMIT)
+                    break;
+                Position pos = Position.fromFen(fen);
+                long start = System.nanoTime();
+                long nodes = count(pos, depth);
+                long nanos = System.nanoTime() - start;
+                totalNodes += nodes;
+                totalNanos += nanos;
+                boolean match = nodes == expected[depth - 1];
+                ok &= match;
+                System.out.printf("  depth %d: %12d %s (%.0f nps)%n", depth, nodes,
+                        match ? "ok" : "FAILED, expected " + expected[depth - 1], nodes * 1e9 / Math.max(1, nanos));
+            }
+        }
+        System.out.println(ok ? "All perft counts match" : "Perft MISMATCH");
+        report(totalNodes, totalNanos);
+        return ok;
+    }
+
+    private static void report(long nodes, long nanos) {
+        System.out.printf("Time: %.3f s, %.0f nodes/s%n", nanos / 1e9, nodes * 1e9 / Math.max(1, nanos));
+    }
+}
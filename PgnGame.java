@@ -0,0 +1,113 @@
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// One game in PGN terms: tag pairs, the position it starts from and the
+// moves played, kept as encoded moves and turned into SAN only on output.
+final class PgnGame {
+    // The Seven Tag Roster, written first and in this order
+    private static final String[] ROSTER = { "Event", "Site", "Date", "Round", "White", "Black", "Result" };
+    private static final int LINE_LENGTH = 79;
+
+    final Map<String, String> tags = new LinkedHashMap<>();
+    private int[] moves = new int[128];
+    private int moveCount;
+    // Why the movetext could not be replayed, or null; moves up to the
+    // offending one are kept
+    String error;
+
+    String getTag(String name) {
+        return tags.get(name);
+    }
+
+    void setTag(String name, String value) {
+        tags.put(name, value);
+    }
+
+    String getResult() {
+        return tags.getOrDefault("Result", "*");
+    }
+
+    // The FEN tag when present, the standard start position otherwise
+    Position startPosition() {
+        String fen = tags.get("FEN");
+        return fen != null ? Position.fromFen(fen) : Position.startPosition();
+    }
+
+    void setStartPosition(Position pos) {
+        if (pos.toFen().equals(Position.startPosition().toFen())) {
+            tags.remove("SetUp");
+            tags.remove("FEN");
+        } else {
+            tags.put("SetUp", "1");
+            tags.put("FEN", pos.toFen());
+        }
+    }
+
+    void addMove(int move) {
+        if (moveCount == moves.length)
+            moves = Arrays.copyOf(moves, moveCount * 2);
+        moves[moveCount++] = move;
+    }
+
+    // Takes back the last move, returning it
+    int removeLastMove() {
+        return moves[--moveCount];
+    }
+
+    int moveCount() {
+        return moveCount;
+    }
+
+    int move(int index) {
+        return moves[index];
+    }
+
+    Position finalPosition() {
+        Position pos = startPosition();
+        for (int i = 0; i < moveCount; i++)
+            pos.makeMove(moves[i]);
+        return pos;
+    }
+
+    String toPgn() {
+        StringBuilder out = new StringBuilder();
+        for (String name : ROSTER)
+            appendTag(out, name, name.equals("Result") ? getResult() : tags.getOrDefault(name, "?"));
+        for (Map.Entry<String, String> tag : tags.entrySet()) {
+            if (!Arrays.asList(ROSTER).contains(tag.getKey()))
+                appendTag(out, tag.getKey(), tag.getValue());
+        }
+        out.append('\n');
+
+        Position pos = startPosition();
+        int[] buffer = new int[MoveGenerator.MAX_MOVES];
+        StringBuilder line = new StringBuilder();
+        for (int i = 0; i < moveCount; i++) {
+            String token = Moves.toSan(pos, moves[i], buffer);
+            if (pos.sideToMove == ChessPiece.WHITE)
+                token = pos.fullmoveNumber + ". " + token;
+            else if (i == 0)
+                token = pos.fullmoveNumber + "... " + token;
+            appendWrapped(out, line, token);
+            pos.makeMove(moves[i]);
+        }
+        appendWrapped(out, line, getResult());
+        return out.append(line).append("\n\n").toString();
+    }
+
+    private static void appendTag(StringBuilder out, String name, String value) {
+        out.append('[').append(name).append(" \"")
+                .append(value.replace("\\", "\\\\").replace("\"", "\\\"")).append("\"]\n");
+    }
+
+    private static void appendWrapped(StringBuilder out, StringBuilder line, String token) {
+        if (line.length() > 0 && line.length() + 1 + token.length() > LINE_LENGTH) {
+            out.append(line).append('\n');
+            line.setLength(0);
+        }
+        if (line.length() > 0)
+            line.append(' ');
+        line.append(token);
+    }
+}
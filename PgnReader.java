@@ -0,0 +1,276 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Locale;
+
+// Streaming PGN parser. Bytes come through one fixed NIO buffer and games
+// are handed out one at a time, so memory use does not depend on the size
+// of the database. Comments, variations, NAGs and escape lines are
+// skipped; SAN moves are replayed so every game comes back as encoded
+// moves, or with PgnGame.error set where the movetext went wrong.
+//
+// Usage: java PgnReader <file.pgn> [--headers-only]
+//        parses the whole file and reports the speed
+public class PgnReader implements Closeable {
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final ReadableByteChannel channel;
+    private final byte[] bytes = new byte[BUFFER_SIZE];
+    private final ByteBuffer buffer = ByteBuffer.wrap(bytes);
+    private int pos, limit;
+    private boolean eof, started;
+    private final boolean parseMoves;
+
+    private final StringBuilder token = new StringBuilder(16);
+    private byte[] value = new byte[256];
+    private final int[] moveBuffer = new int[MoveGenerator.MAX_MOVES];
+    private long bytesRead;
+
+    PgnReader(ReadableByteChannel channel) {
+        this(channel, true);
+    }
+
+    // With parseMoves off only the tag pairs are read, which is much faster
+    // when just scanning a database
+    PgnReader(ReadableByteChannel channel, boolean parseMoves) {
+        this.channel = channel;
+        this.parseMoves = parseMoves;
+    }
+
+    static PgnReader open(String path, boolean parseMoves) throws IOException {
+        return new PgnReader(FileChannel.open(Paths.get(path), StandardOpenOption.READ), parseMoves);
+    }
+
+    long getBytesRead() {
+        return bytesRead;
+    }
+
+    // The next game, or null at the end of the input
+    PgnGame next() throws IOException {
+        if (!started) {
+            started = true;
+            // UTF-8 byte order mark
+            if (peek() == 0xEF) {
+                for (int i = 0; i < 3; i++)
+                    read();
+            }
+        }
+        PgnGame game = null;
+        Position position = null;
+        boolean inMovetext = false;
+        while (true) {
+            int c = peek();
+            if (c < 0)
+                return game;
+            if (c <= ' ') {
+                read();
+                continue;
+            }
+            if (game == null)
+                game = new PgnGame();
+            switch (c) {
+                case '[':
+                    // A game whose movetext ended without a result
+                    if (inMovetext)
+                        return game;
+                    read();
+                    readTag(game);
+                    break;
+                case '{':
+                    skipPast('}');
+                    break;
+                case ';':
+                case '%':
+                    skipPast('\n');
+                    break;
+                case '(':
+                    skipVariation();
+                    break;
+                case '$':
+                    readToken();
+                    break;
+                default:
+                    readToken();
+                    if (isResult(token)) {
+                        if (!game.tags.containsKey("Result"))
+                            game.setTag("Result", token.toString());
+                        return game;
+                    }
+                    inMovetext = true;
+                    if (!parseMoves || game.error != null)
+                        break;
+                    String san = stripMoveNumber(token);
+                    if (san.isEmpty())
+                        break;
+                    if (position == null) {
+                        try {
+                            position = game.startPosition();
+                        } catch (RuntimeException e) {
+                            game.error = "Invalid FEN tag";
+                            break;
+                        }
+                    }
+                    int move = Moves.fromSan(position, san, moveBuffer);
+                    if (move == Moves.NONE) {
+                        game.error = "Illegal move " + san + " at ply " + (game.moveCount() + 1);
+                        break;
+                    }
+                    game.addMove(move);
+                    position.makeMove(move);
+                    break;
+            }
+        }
+    }
+
+    private void readTag(PgnGame game) throws IOException {
+        int c;
+        while ((c = peek()) >= 0 && c <= ' ')
+            read();
+        token.setLength(0);
+        while ((c = peek()) > ' ' && c != '"' && c != ']')
+            token.append((char) read());
+        String name = token.toString();
+        while ((c = read()) >= 0 && c != '"' && c != ']')
+            ;
+        if (c != '"')
+            return;
+        int length = 0;
+        while ((c = read()) >= 0 && c != '"') {
+            if (c == '\\')
+                c = read();
+            if (length == value.length)
+                value = Arrays.copyOf(value, length * 2);
+            value[length++] = (byte) c;
+        }
+        skipPast(']');
+        game.setTag(name, new String(value, 0, length, StandardCharsets.UTF_8));
+    }
+
+    // Movetext symbols run until whitespace or a delimiter
+    private void readToken() throws IOException {
+        token.setLength(0);
+        int c;
+        while ((c = peek()) > ' ' && c != '{' && c != '(' && c != ')' && c != '[' && c != ']' && c != ';')
+            token.append((char) read());
+        // A lone delimiter that cannot start anything, such as a stray ')'
+        if (token.length() == 0)
+            read();
+    }
+
+    private void skipVariation() throws IOException {
+        int depth = 0, c;
+        while ((c = read()) >= 0) {
+            if (c == '(')
+                depth++;
+            else if (c == ')' && --depth == 0)
+                return;
+            else if (c == '{')
+                skipPast('}');
+            else if (c == ';')
+                skipPast('\n');
+        }
+    }
+
+    private void skipPast(int end) throws IOException {
+        int c;
+        while ((c = read()) >= 0 && c != end)
+            ;
+    }
+
+    // Checked on every token, so without building a String
+    private static boolean isResult(StringBuilder s) {
+        switch (s.length()) {
+            case 1:
+                return s.charAt(0) == '*';
+            case 3:
+                return s.charAt(1) == '-' && (s.charAt(0) == '1' && s.charAt(2) == '0'
+                        || s.charAt(0) == '0' && s.charAt(2) == '1');
+            case 7:
+                return s.indexOf("1/2-1/2") == 0;
+            default:
+                return false;
+        }
+    }
+
+    // "12.", "12...e5" and "e5" all come down to the move itself
+    private static String stripMoveNumber(CharSequence s) {
+        int i = 0;
+        while (i < s.length() && Character.isDigit(s.charAt(i)))
+            i++;
+        if (i == 0)
+            return s.toString();
+        int digits = i;
+        while (i < s.length() && s.charAt(i) == '.')
+            i++;
+        // Castling written with zeros has no dot after the digit
+        return i == digits ? s.toString() : s.subSequence(i, s.length()).toString();
+    }
+
+    private int peek() throws IOException {
+        if (pos == limit && !fill())
+            return -1;
+        return bytes[pos] & 0xFF;
+    }
+
+    private int read() throws IOException {
+        if (pos == limit && !fill())
+            return -1;
+        return bytes[pos++] & 0xFF;
+    }
+
+    private boolean fill() throws IOException {
+        if (eof)
+            return false;
+        buffer.clear();
+        int n;
+        do {
+            n = channel.read(buffer);
+        } while (n == 0);
+        if (n < 0) {
+            eof = true;
+            return false;
+        }
+        pos = 0;
+        limit = n;
+        bytesRead += n;
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.err.println("Usage: java PgnReader <file.pgn> [--headers-only]");
+            System.exit(2);
+        }
+        boolean parseMoves = !(args.length > 1 && args[1].equals("--headers-only"));
+        long games = 0, moves = 0, errors = 0;
+        long start = System.nanoTime();
+        long bytes;
+        try (PgnReader reader = open(args[0], parseMoves)) {
+            PgnGame game;
+            while ((game = reader.next()) != null) {
+                games++;
+                moves += game.moveCount();
+                if (game.error != null) {
+                    if (errors++ < 10)
+                        System.err.println("Game " + games + ": " + game.error);
+                }
+            }
+            bytes = reader.getBytesRead();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf(Locale.ROOT, "Games: %d, moves: %d, errors: %d%n", games, moves, errors);
+        System.out.printf(Locale.ROOT, "Time: %.2f s, %.0f games/min, %.1f MB/s%n", seconds,
+                games * 60 / seconds, bytes / seconds / (1024 * 1024));
+    }
+}
@@ -0,0 +1,107 @@
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.Shape;
+import java.awt.font.FontRenderContext;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import javax.swing.ImageIcon;
+
+// Piece icons drawn from glyph outlines at the size they are shown, so
+// they stay sharp at any board size. One cache serves every board window:
+// sets are keyed by style and size, and the least recently used are
+// dropped once a few sizes have been seen.
+final class PieceSprites {
+    static final String[] STYLES = { "Standard", "Modern", "Minimalist" };
+
+    private static final String GLYPHS = "♟♞♝♜♛♚";
+    private static final String LETTERS = "PNBRQK";
+    private static final int MAX_SETS = 8;
+
+    private static final Map<String, ImageIcon[][]> CACHE = new LinkedHashMap<String, ImageIcon[][]>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, ImageIcon[][]> eldest) {
+            return size() > MAX_SETS;
+        }
+    };
+
+    private PieceSprites() {
+    }
+
+    // Icons indexed [color][type], size pixels square
+    static synchronized ImageIcon[][] get(String style, int size) {
+        return CACHE.computeIfAbsent(style + "/" + size, k -> draw(style, size));
+    }
+
+    private static ImageIcon[][] draw(String style, int size) {
+        ImageIcon[][] icons = new ImageIcon[2][6];
+        for (int color = 0; color < 2; color++) {
+            for (int type = 0; type < 6; type++) {
+                BufferedImage img = new BufferedImage(size, size, BufferedImage.TYPE_INT_ARGB_PRE);
+                Graphics2D g2d = img.createGraphics();
+                g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+                g2d.setRenderingHint(RenderingHints.KEY_STROKE_CONTROL, RenderingHints.VALUE_STROKE_PURE);
+                switch (style) {
+                    case "Modern":
+                        drawGlyph(g2d, new Font("SansSerif", Font.PLAIN, 100), GLYPHS.charAt(type), size, 0.8,
+                                color == 0 ? new Color(250, 250, 250) : new Color(45, 45, 55),
+                                color == 0 ? new Color(45, 45, 55) : new Color(200, 200, 210), size / 48f);
+                        break;
+                    case "Minimalist":
+                        drawDisc(g2d, LETTERS.charAt(type), color, size);
+                        break;
+                    default:
+                        drawGlyph(g2d, new Font("Serif", Font.BOLD, 100), GLYPHS.charAt(type), size, 0.85,
+                                color == 0 ? Color.WHITE : Color.BLACK,
+                                color == 0 ? Color.BLACK : Color.GRAY, size / 32f);
+                        break;
+                }
+                g2d.dispose();
+                icons[color][type] = new ImageIcon(img);
+            }
+        }
+        return icons;
+    }
+
+    // Fills the glyph's outline scaled to fill a share of the square and
+    // strokes its edge so white pieces show on light squares
+    private static void drawGlyph(Graphics2D g2d, Font font, char glyph, int size, double share, Color fill,
+            Color edge, float edgeWidth) {
+        Shape outline = fitted(g2d, font, String.valueOf(glyph), size, share);
+        g2d.setColor(fill);
+        g2d.fill(outline);
+        g2d.setColor(edge);
+        g2d.setStroke(new BasicStroke(edgeWidth, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND));
+        g2d.draw(outline);
+    }
+
+    private static void drawDisc(Graphics2D g2d, char letter, int color, int size) {
+        double inset = size * 0.12;
+        Shape disc = new Ellipse2D.Double(inset, inset, size - 2 * inset, size - 2 * inset);
+        g2d.setColor(color == 0 ? Color.WHITE : Color.BLACK);
+        g2d.fill(disc);
+        g2d.setColor(Color.DARK_GRAY);
+        g2d.setStroke(new BasicStroke(size / 40f));
+        g2d.draw(disc);
+        g2d.setColor(color == 0 ? Color.BLACK : Color.WHITE);
+        g2d.fill(fitted(g2d, new Font("SansSerif", Font.BOLD, 100), String.valueOf(letter), size, 0.4));
+    }
+
+    private static Shape fitted(Graphics2D g2d, Font font, String text, int size, double share) {
+        FontRenderContext frc = g2d.getFontRenderContext();
+        Shape shape = font.createGlyphVector(frc, text).getOutline();
+        Rectangle2D bounds = shape.getBounds2D();
+        double scale = size * share / Math.max(bounds.getWidth(), bounds.getHeight());
+        AffineTransform transform = new AffineTransform();
+        transform.translate(size / 2.0, size / 2.0);
+        transform.scale(scale, scale);
+        transform.translate(-bounds.getCenterX(), -bounds.getCenterY());
+        return transform.createTransformedShape(shape);
+    }
+}
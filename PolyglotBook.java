@@ -0,0 +1,232 @@
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Random;
+import java.util.SplittableRandom;
+
+// Opening book in the Polyglot .bin format: 16-byte big-endian entries of
+// key, move, weight and learn value, sorted by key. The file is mapped
+// and searched in place; a probe allocates nothing.
+//
+// Polyglot keys use their own 781 random numbers rather than our Zobrist
+// keys. Set -Dchess.polyglotRandom to a file holding the standard Random64
+// table (781 hex numbers, as in the Polyglot sources) to read books made
+// by other tools; without it a generated table is used, which works only
+// with books written by BookBuilder. BookBuilder starts its books with a
+// weightless marker entry naming the table it keyed them with, and a book
+// whose keys cannot match the table in use is refused rather than probed.
+final class PolyglotBook implements Closeable {
+    static final int ENTRY = 16;
+
+    // Learn value of the marker entry; the low bit is set for the standard table
+    private static final int MARKER = 0x43424B00;
+
+    private static boolean standardRandom;
+    private static final long[] RANDOM = loadRandom();
+    private static final int CASTLE_OFFSET = 768, EP_OFFSET = 772, TURN_OFFSET = 780;
+
+    private static final ThreadLocal<int[]> MOVES = ThreadLocal.withInitial(() -> new int[MoveGenerator.MAX_MOVES]);
+
+    private static PolyglotBook defaultBook;
+    private static boolean defaultLoaded;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer entries;
+    private final int count;
+
+    private PolyglotBook(FileChannel channel, MappedByteBuffer entries) {
+        this.channel = channel;
+        this.entries = entries;
+        this.count = entries.capacity() / ENTRY;
+    }
+
+    static PolyglotBook open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        long size = channel.size();
+        if (size % ENTRY != 0 || size > Integer.MAX_VALUE) {
+            channel.close();
+            throw new IOException("Not a Polyglot book: " + path);
+        }
+        PolyglotBook book = new PolyglotBook(channel, channel.map(FileChannel.MapMode.READ_ONLY, 0, size));
+        String problem = book.checkRandom();
+        if (problem != null) {
+            channel.close();
+            throw new IOException(problem + ": " + path);
+        }
+        return book;
+    }
+
+    // Why this book's keys cannot match the random table in use, or null
+    private String checkRandom() {
+        int learn = count > 0 && keyAt(0) == 0 ? entries.getInt(12) : 0;
+        if ((learn & ~1) == MARKER && entries.getInt(8) == 0) {
+            if ((learn & 1) == (standardRandom ? 1 : 0))
+                return null;
+            return standardRandom ? "Book was built with the generated random table, not -Dchess.polyglotRandom"
+                    : "Book was built with the standard random table; set -Dchess.polyglotRandom to read it";
+        }
+        return standardRandom ? null
+                : "Book was not built by BookBuilder; set -Dchess.polyglotRandom to the standard Random64 table";
+    }
+
+    // The marker entry BookBuilder writes first; key 0 sorts before any
+    // other and weight 0 is never picked
+    static void writeMarker(DataOutputStream out) throws IOException {
+        out.writeLong(0);
+        out.writeInt(0);
+        out.writeInt(MARKER | (standardRandom ? 1 : 0));
+    }
+
+    // The book named by -Dchess.book, or book.bin in the working directory,
+    // or null when there is neither
+    static synchronized PolyglotBook getDefault() {
+        if (!defaultLoaded) {
+            defaultLoaded = true;
+            Path path = Paths.get(System.getProperty("chess.book", "book.bin"));
+            try {
+                if (Files.isRegularFile(path))
+                    defaultBook = open(path);
+            } catch (IOException e) {
+                System.err.println("Opening book not loaded: " + e.getMessage());
+            }
+        }
+        return defaultBook;
+    }
+
+    int size() {
+        return count;
+    }
+
+    // A legal book move for pos picked with probability proportional to its
+    // weight, or Moves.NONE when the position is not in the book
+    int probe(Position pos, Random random) {
+        long key = key(pos);
+        int first = lowerBound(key);
+        int total = 0;
+        for (int i = first; i < count && keyAt(i) == key; i++)
+            total += weightAt(i);
+        if (total == 0)
+            return Moves.NONE;
+        int pick = random.nextInt(total);
+        for (int i = first; i < count && keyAt(i) == key; i++) {
+            pick -= weightAt(i);
+            if (pick < 0)
+                return toMove(pos, entries.getShort(i * ENTRY + 8) & 0xFFFF);
+        }
+        return Moves.NONE;
+    }
+
+    private int lowerBound(long key) {
+        int lo = 0, hi = count;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (Long.compareUnsigned(keyAt(mid), key) < 0)
+                lo = mid + 1;
+            else
+                hi = mid;
+        }
+        return lo;
+    }
+
+    private long keyAt(int i) {
+        return entries.getLong(i * ENTRY);
+    }
+
+    private int weightAt(int i) {
+        return entries.getShort(i * ENTRY + 10) & 0xFFFF;
+    }
+
+    // Polyglot moves are to file, to rank, from file, from rank and
+    // promotion in 3 bits each; castling is written as the king taking
+    // its own rook. Anything that is not a legal move here, as after a key
+    // collision, comes back as NONE.
+    static int toMove(Position pos, int polyglot) {
+        int to = polyglot & 63, from = (polyglot >>> 6) & 63;
+        int promotion = (polyglot >>> 12) & 7;
+        int moved = pos.board[from];
+        if (moved == Position.EMPTY || Position.colorOf(moved) != pos.sideToMove)
+            return Moves.NONE;
+        if (Position.typeOf(moved) == ChessPiece.KING && pos.board[to] == Position.piece(pos.sideToMove,
+                ChessPiece.ROOK))
+            to = to > from ? from + 2 : from - 2;
+        int move = Moves.fromCompact(pos, Moves.encode(from, to, promotion, Moves.NORMAL));
+        int[] moves = MOVES.get();
+        int n = MoveGenerator.generatePseudoLegal(pos, moves, 0, false);
+        for (int i = 0; i < n; i++) {
+            if (moves[i] == move)
+                return MoveGenerator.isLegal(pos, move) ? move : Moves.NONE;
+        }
+        return Moves.NONE;
+    }
+
+    static int toPolyglot(int move) {
+        int from = Moves.from(move), to = Moves.to(move);
+        if (Moves.flag(move) == Moves.CASTLE)
+            to = to > from ? from + 3 : from - 4;
+        return to | (from << 6) | (Moves.promotion(move) << 12);
+    }
+
+    static long key(Position pos) {
+        long key = 0;
+        for (long bb = pos.occupied; bb != 0; bb &= bb - 1) {
+            int sq = Long.numberOfTrailingZeros(bb);
+            int p = pos.board[sq];
+            int kind = 2 * Position.typeOf(p) + (Position.colorOf(p) == ChessPiece.WHITE ? 1 : 0);
+            key ^= RANDOM[64 * kind + sq];
+        }
+        for (int right = 0; right < 4; right++) {
+            if ((pos.castlingRights & (1 << right)) != 0)
+                key ^= RANDOM[CASTLE_OFFSET + right];
+        }
+        // The en passant file counts only when a pawn can actually capture
+        if (pos.epSquare != Position.EMPTY) {
+            int us = pos.sideToMove;
+            if ((Attacks.PAWN[us ^ 1][pos.epSquare] & pos.pieces[us][ChessPiece.PAWN]) != 0)
+                key ^= RANDOM[EP_OFFSET + (pos.epSquare & 7)];
+        }
+        if (pos.sideToMove == ChessPiece.WHITE)
+            key ^= RANDOM[TURN_OFFSET];
+        return key;
+    }
+
+    private static long[] loadRandom() {
+        long[] random = new long[781];
+        String file = System.getProperty("chess.polyglotRandom");
+        if (file != null) {
+            try {
+                List<String> lines = Files.readAllLines(Paths.get(file));
+                int n = 0;
+                for (String line : lines) {
+                    for (String token : line.split("[\\s,{}]+")) {
+                        token = token.replaceFirst("^0[xX]", "").replaceFirst("[uUlL]+$", "");
+                        if (!token.isEmpty() && n < random.length)
+                            random[n++] = Long.parseUnsignedLong(token, 16);
+                    }
+                }
+                if (n == random.length) {
+                    standardRandom = true;
+                    return random;
+                }
+                System.err.println("Expected 781 numbers in " + file + ", found " + n);
+            } catch (IOException | NumberFormatException e) {
+                System.err.println("Polyglot random table not loaded: " + e.getMessage());
+            }
+        }
+        SplittableRandom generator = new SplittableRandom(0x9D39247E33776D41L);
+        for (int i = 0; i < random.length; i++)
+            random[i] = generator.nextLong();
+        return random;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,486 @@
+import java.util.Arrays;
+
+// Headless chess position: one bitboard per color and piece type plus
+// occupancy, with a square-indexed mailbox for constant-time lookups.
+final class Position {
+    static final int EMPTY = -1;
+
+    static final int WHITE_KINGSIDE = 1, WHITE_QUEENSIDE = 2, BLACK_KINGSIDE = 4, BLACK_QUEENSIDE = 8;
+
+    // Castling rights that survive a move touching the given square
+    private static final int[] CASTLE_MASK = new int[64];
+
+    static {
+        Arrays.fill(CASTLE_MASK, 15);
+        CASTLE_MASK[0] &= ~WHITE_QUEENSIDE;
+        CASTLE_MASK[7] &= ~WHITE_KINGSIDE;
+        CASTLE_MASK[4] &= ~(WHITE_KINGSIDE | WHITE_QUEENSIDE);
+        CASTLE_MASK[56] &= ~BLACK_QUEENSIDE;
+        CASTLE_MASK[63] &= ~BLACK_KINGSIDE;
+        CASTLE_MASK[60] &= ~(BLACK_KINGSIDE | BLACK_QUEENSIDE);
+    }
+
+    final long[][] pieces = new long[2][6];
+    final long[] occupancy = new long[2];
+    long occupied;
+    final int[] board = new int[64];
+    int sideToMove = ChessPiece.WHITE;
+    int castlingRights;
+    int epSquare = EMPTY;
+    int halfmoveClock;
+    int fullmoveNumber = 1;
+    long key;
+
+    // Evaluation terms kept up to date by every piece change: white-minus-
+    // black material plus piece-square sums, game phase and a pawn-only key
+    int mgScore;
+    int egScore;
+    int phase;
+    long pawnKey;
+
+    // Enemy pieces giving check and own pieces pinned to the king, for the
+    // side to move; kept by every move, and by updateCheckInfo() after a
+    // position is set up piece by piece
+    long checkers;
+    long pinned;
+
+    // Undo stack: captured piece, castling rights, en passant square and
+    // halfmove clock packed per ply, alongside the key and check info
+    // before each move; sized for a short game and grown as needed, since
+    // a server may hold thousands of positions
+    private int[] undo = new int[64];
+    private long[] keys = new long[64];
+    private long[] checkInfo = new long[128];
+    int ply;
+
+    Position() {
+        clear();
+    }
+
+    static Position startPosition() {
+        Position position = new Position();
+        int[] backRank = { ChessPiece.ROOK, ChessPiece.KNIGHT, ChessPiece.BISHOP, ChessPiece.QUEEN,
+                ChessPiece.KING, ChessPiece.BISHOP, ChessPiece.KNIGHT, ChessPiece.ROOK };
+        for (int file = 0; file < 8; file++) {
+            position.putPiece(ChessPiece.WHITE, backRank[file], file);
+            position.putPiece(ChessPiece.WHITE, ChessPiece.PAWN, 8 + file);
+            position.putPiece(ChessPiece.BLACK, ChessPiece.PAWN, 48 + file);
+            position.putPiece(ChessPiece.BLACK, backRank[file], 56 + file);
+        }
+        position.castlingRights = WHITE_KINGSIDE | WHITE_QUEENSIDE | BLACK_KINGSIDE | BLACK_QUEENSIDE;
+        position.key = Zobrist.compute(position);
+        position.updateCheckInfo();
+        return position;
+    }
+
+    static Position fromFen(String fen) {
+        String[] fields = fen.trim().split("\\s+");
+        if (fields.length != 4 && fields.length != 6)
+            throw new IllegalArgumentException("Invalid FEN: " + fen);
+        Position p = new Position();
+        int rank = 7, file = 0;
+        for (char c : fields[0].toCharArray()) {
+            if (c == '/') {
+                rank--;
+                file = 0;
+            } else if (c >= '1' && c <= '8') {
+                file += c - '0';
+            } else {
+                int type = "pnbrqk".indexOf(Character.toLowerCase(c));
+                if (type < 0 || rank < 0 || file > 7)
+                    throw new IllegalArgumentException("Invalid FEN: " + fen);
+                p.putPiece(Character.isUpperCase(c) ? ChessPiece.WHITE : ChessPiece.BLACK, type, rank * 8 + file++);
+            }
+        }
+        if (Long.bitCount(p.pieces[ChessPiece.WHITE][ChessPiece.KING]) != 1
+                || Long.bitCount(p.pieces[ChessPiece.BLACK][ChessPiece.KING]) != 1)
+            throw new IllegalArgumentException("Invalid FEN: " + fen);
+
+        if (!fields[1].equals("w") && !fields[1].equals("b"))
+            throw new IllegalArgumentException("Invalid FEN side to move: " + fen);
+        p.sideToMove = fields[1].equals("b") ? ChessPiece.BLACK : ChessPiece.WHITE;
+        if (!fields[2].equals("-")) {
+            for (char c : fields[2].toCharArray()) {
+                int right = "KQkq".indexOf(c);
+                if (right < 0 || (p.castlingRights & (1 << right)) != 0 || !p.canHaveRight(right))
+                    throw new IllegalArgumentException("Invalid FEN castling rights: " + fen);
+                p.castlingRights |= 1 << right;
+            }
+        }
+        if (!fields[3].equals("-")) {
+            p.epSquare = parseEpSquare(p, fields[3]);
+            if (p.epSquare == EMPTY)
+                throw new IllegalArgumentException("Invalid FEN en passant square: " + fen);
+        }
+        if (fields.length == 6) {
+            p.halfmoveClock = Integer.parseInt(fields[4]);
+            p.fullmoveNumber = Integer.parseInt(fields[5]);
+            if (p.halfmoveClock < 0 || p.fullmoveNumber < 1)
+                throw new IllegalArgumentException("Invalid FEN move counters: " + fen);
+        }
+        p.key = Zobrist.compute(p);
+        p.updateCheckInfo();
+        return p;
+    }
+
+    // Castling right 0-3, in KQkq order, is only possible with the king
+    // and that rook still on their home squares
+    private boolean canHaveRight(int right) {
+        int color = right < 2 ? ChessPiece.WHITE : ChessPiece.BLACK;
+        int king = color == ChessPiece.WHITE ? 4 : 60;
+        int rook = (right & 1) == 0 ? king + 3 : king - 4;
+        return board[king] == piece(color, ChessPiece.KING) && board[rook] == piece(color, ChessPiece.ROOK);
+    }
+
+    // The en passant square named in a FEN, or EMPTY unless it is on the
+    // board, on the rank a double push by the side not to move passes, and
+    // empty with that side's pawn just in front of it
+    private static int parseEpSquare(Position p, String name) {
+        if (name.length() != 2)
+            return EMPTY;
+        int file = name.charAt(0) - 'a', rank = name.charAt(1) - '1';
+        if (file < 0 || file > 7 || rank != (p.sideToMove == ChessPiece.WHITE ? 5 : 2))
+            return EMPTY;
+        int sq = rank * 8 + file;
+        int pushed = p.sideToMove == ChessPiece.WHITE ? sq - 8 : sq + 8;
+        if (p.board[sq] != EMPTY || p.board[pushed] != piece(p.sideToMove ^ 1, ChessPiece.PAWN))
+            return EMPTY;
+        return sq;
+    }
+
+    String toFen() {
+        StringBuilder fen = new StringBuilder();
+        for (int rank = 7; rank >= 0; rank--) {
+            int empty = 0;
+            for (int file = 0; file < 8; file++) {
+                int p = board[rank * 8 + file];
+                if (p == EMPTY) {
+                    empty++;
+                    continue;
+                }
+                if (empty > 0)
+                    fen.append(empty);
+                empty = 0;
+                char c = "pnbrqk".charAt(typeOf(p));
+                fen.append(colorOf(p) == ChessPiece.WHITE ? Character.toUpperCase(c) : c);
+            }
+            if (empty > 0)
+                fen.append(empty);
+            if (rank > 0)
+                fen.append('/');
+        }
+        fen.append(sideToMove == ChessPiece.WHITE ? " w " : " b ");
+        if (castlingRights == 0)
+            fen.append('-');
+        for (int right = 0; right < 4; right++) {
+            if ((castlingRights & (1 << right)) != 0)
+                fen.append("KQkq".charAt(right));
+        }
+        fen.append(' ').append(epSquare < 0 ? "-" : Moves.squareName(epSquare));
+        return fen.append(' ').append(halfmoveClock).append(' ').append(fullmoveNumber).toString();
+    }
+
+    Position copy() {
+        Position p = new Position();
+        for (int color = 0; color < 2; color++) {
+            System.arraycopy(pieces[color], 0, p.pieces[color], 0, 6);
+            p.occupancy[color] = occupancy[color];
+        }
+        p.occupied = occupied;
+        System.arraycopy(board, 0, p.board, 0, 64);
+        p.sideToMove = sideToMove;
+        p.castlingRights = castlingRights;
+        p.epSquare = epSquare;
+        p.halfmoveClock = halfmoveClock;
+        p.fullmoveNumber = fullmoveNumber;
+        p.key = key;
+        p.mgScore = mgScore;
+        p.egScore = egScore;
+        p.phase = phase;
+        p.pawnKey = pawnKey;
+        p.checkers = checkers;
+        p.pinned = pinned;
+        p.undo = undo.clone();
+        p.keys = keys.clone();
+        p.checkInfo = checkInfo.clone();
+        p.ply = ply;
+        return p;
+    }
+
+    // The GUI counts rows from black's back rank (row 0 = rank 8)
+    static int square(int row, int col) {
+        return (7 - row) * 8 + col;
+    }
+
+    static int row(int sq) {
+        return 7 - (sq >>> 3);
+    }
+
+    static int col(int sq) {
+        return sq & 7;
+    }
+
+    static int piece(int color, int type) {
+        return color * 6 + type;
+    }
+
+    static int colorOf(int piece) {
+        return piece / 6;
+    }
+
+    static int typeOf(int piece) {
+        return piece % 6;
+    }
+
+    void clear() {
+        for (int color = 0; color < 2; color++) {
+            for (int type = 0; type < 6; type++)
+                pieces[color][type] = 0L;
+            occupancy[color] = 0L;
+        }
+        occupied = 0L;
+        Arrays.fill(board, EMPTY);
+        sideToMove = ChessPiece.WHITE;
+        castlingRights = 0;
+        epSquare = EMPTY;
+        halfmoveClock = 0;
+        fullmoveNumber = 1;
+        ply = 0;
+        mgScore = 0;
+        egScore = 0;
+        phase = 0;
+        pawnKey = 0L;
+        checkers = 0L;
+        pinned = 0L;
+        key = Zobrist.compute(this);
+    }
+
+    void putPiece(int color, int type, int sq) {
+        long b = 1L << sq;
+        pieces[color][type] |= b;
+        occupancy[color] |= b;
+        occupied |= b;
+        int p = piece(color, type);
+        board[sq] = p;
+        key ^= Zobrist.PIECE[p][sq];
+        mgScore += Evaluator.MG[p][sq];
+        egScore += Evaluator.EG[p][sq];
+        phase += Evaluator.PHASE[type];
+        if (type == ChessPiece.PAWN)
+            pawnKey ^= Zobrist.PIECE[p][sq];
+    }
+
+    void removePiece(int sq) {
+        int p = board[sq];
+        long b = 1L << sq;
+        pieces[colorOf(p)][typeOf(p)] &= ~b;
+        occupancy[colorOf(p)] &= ~b;
+        occupied &= ~b;
+        board[sq] = EMPTY;
+        key ^= Zobrist.PIECE[p][sq];
+        mgScore -= Evaluator.MG[p][sq];
+        egScore -= Evaluator.EG[p][sq];
+        phase -= Evaluator.PHASE[typeOf(p)];
+        if (typeOf(p) == ChessPiece.PAWN)
+            pawnKey ^= Zobrist.PIECE[p][sq];
+    }
+
+    private void movePiece(int from, int to) {
+        int p = board[from];
+        long b = (1L << from) | (1L << to);
+        pieces[colorOf(p)][typeOf(p)] ^= b;
+        occupancy[colorOf(p)] ^= b;
+        occupied ^= b;
+        board[from] = EMPTY;
+        board[to] = p;
+        key ^= Zobrist.PIECE[p][from] ^ Zobrist.PIECE[p][to];
+        mgScore += Evaluator.MG[p][to] - Evaluator.MG[p][from];
+        egScore += Evaluator.EG[p][to] - Evaluator.EG[p][from];
+        if (typeOf(p) == ChessPiece.PAWN)
+            pawnKey ^= Zobrist.PIECE[p][from] ^ Zobrist.PIECE[p][to];
+    }
+
+    ChessPiece getPiece(int row, int col) {
+        int p = board[square(row, col)];
+        return p == EMPTY ? null : ChessPiece.of(colorOf(p), typeOf(p));
+    }
+
+    int kingSquare(int color) {
+        return Long.numberOfTrailingZeros(pieces[color][ChessPiece.KING]);
+    }
+
+    boolean inCheck() {
+        return checkers != 0;
+    }
+
+    void updateCheckInfo() {
+        int us = sideToMove, them = us ^ 1;
+        checkers = 0;
+        pinned = 0;
+        if (pieces[us][ChessPiece.KING] == 0)
+            return;
+        int king = kingSquare(us);
+        checkers = attackersOf(king, them, occupied);
+        long[] by = pieces[them];
+        long snipers = (Attacks.rook(king, 0) & (by[ChessPiece.ROOK] | by[ChessPiece.QUEEN]))
+                | (Attacks.bishop(king, 0) & (by[ChessPiece.BISHOP] | by[ChessPiece.QUEEN]));
+        for (; snipers != 0; snipers &= snipers - 1) {
+            long between = Attacks.BETWEEN[king][Long.numberOfTrailingZeros(snipers)] & occupied;
+            if (between != 0 && (between & (between - 1)) == 0)
+                pinned |= between & occupancy[us];
+        }
+    }
+
+    // Pieces of byColor attacking sq, with the given squares occupied
+    long attackersOf(int sq, int byColor, long occupied) {
+        long[] by = pieces[byColor];
+        return (Attacks.PAWN[byColor ^ 1][sq] & by[ChessPiece.PAWN])
+                | (Attacks.KNIGHT[sq] & by[ChessPiece.KNIGHT])
+                | (Attacks.KING[sq] & by[ChessPiece.KING])
+                | (Attacks.rook(sq, occupied) & (by[ChessPiece.ROOK] | by[ChessPiece.QUEEN]))
+                | (Attacks.bishop(sq, occupied) & (by[ChessPiece.BISHOP] | by[ChessPiece.QUEEN]));
+    }
+
+    // Every square color attacks, with the given squares occupied
+    long attackMap(int color, long occupied) {
+        long[] by = pieces[color];
+        long pawns = by[ChessPiece.PAWN];
+        long attacks = color == ChessPiece.WHITE
+                ? ((pawns & ~Attacks.FILE_A) << 7) | ((pawns & ~Attacks.FILE_H) << 9)
+                : ((pawns & ~Attacks.FILE_A) >>> 9) | ((pawns & ~Attacks.FILE_H) >>> 7);
+        for (int type = ChessPiece.KNIGHT; type <= ChessPiece.KING; type++) {
+            for (long bb = by[type]; bb != 0; bb &= bb - 1)
+                attacks |= Attacks.piece(type, Long.numberOfTrailingZeros(bb), occupied);
+        }
+        return attacks;
+    }
+
+    boolean isAttacked(int sq, int byColor) {
+        long[] by = pieces[byColor];
+        if ((Attacks.PAWN[byColor ^ 1][sq] & by[ChessPiece.PAWN]) != 0
+                || (Attacks.KNIGHT[sq] & by[ChessPiece.KNIGHT]) != 0
+                || (Attacks.KING[sq] & by[ChessPiece.KING]) != 0)
+            return true;
+        long rooks = by[ChessPiece.ROOK] | by[ChessPiece.QUEEN];
+        if (rooks != 0 && (Attacks.rook(sq, occupied) & rooks) != 0)
+            return true;
+        long bishops = by[ChessPiece.BISHOP] | by[ChessPiece.QUEEN];
+        return bishops != 0 && (Attacks.bishop(sq, occupied) & bishops) != 0;
+    }
+
+    // How often the current position occurred before. Only positions since
+    // the last capture or pawn move can recur, and only with the same side
+    // to move, so the scan steps back two plies at a time from four ago.
+    int repetitions() {
+        int count = 0;
+        for (int i = ply - 4; i >= 0 && i >= ply - halfmoveClock; i -= 2) {
+            if (keys[i] == key)
+                count++;
+        }
+        return count;
+    }
+
+    boolean isRepetition() {
+        for (int i = ply - 4; i >= 0 && i >= ply - halfmoveClock; i -= 2) {
+            if (keys[i] == key)
+                return true;
+        }
+        return false;
+    }
+
+    // Bare kings, or a single minor piece against a bare king
+    boolean insufficientMaterial() {
+        for (int color = 0; color < 2; color++) {
+            if ((pieces[color][ChessPiece.PAWN] | pieces[color][ChessPiece.ROOK]
+                    | pieces[color][ChessPiece.QUEEN]) != 0)
+                return false;
+        }
+        int minors = 0;
+        for (int color = 0; color < 2; color++)
+            minors += Long.bitCount(pieces[color][ChessPiece.KNIGHT] | pieces[color][ChessPiece.BISHOP]);
+        return minors <= 1;
+    }
+
+    void makeMove(int move) {
+        int from = Moves.from(move), to = Moves.to(move), flag = Moves.flag(move);
+        int us = sideToMove;
+        int moved = board[from];
+        int captured = flag == Moves.EN_PASSANT ? piece(us ^ 1, ChessPiece.PAWN) : board[to];
+
+        if (ply == undo.length) {
+            undo = Arrays.copyOf(undo, ply * 2);
+            keys = Arrays.copyOf(keys, ply * 2);
+            checkInfo = Arrays.copyOf(checkInfo, ply * 4);
+        }
+        keys[ply] = key;
+        checkInfo[2 * ply] = checkers;
+        checkInfo[2 * ply + 1] = pinned;
+        undo[ply++] = (captured + 1) | (castlingRights << 4) | ((epSquare + 1) << 8) | (halfmoveClock << 15);
+
+        if (flag == Moves.EN_PASSANT)
+            removePiece(to + (us == ChessPiece.WHITE ? -8 : 8));
+        else if (captured != EMPTY)
+            removePiece(to);
+        movePiece(from, to);
+
+        if (flag == Moves.CASTLE) {
+            if (to > from)
+                movePiece(to + 1, to - 1);
+            else
+                movePiece(to - 2, to + 1);
+        }
+        int promotion = Moves.promotion(move);
+        if (promotion != 0) {
+            removePiece(to);
+            putPiece(us, promotion, to);
+        }
+
+        key ^= Zobrist.CASTLING[castlingRights];
+        castlingRights &= CASTLE_MASK[from] & CASTLE_MASK[to];
+        key ^= Zobrist.CASTLING[castlingRights];
+        if (epSquare != EMPTY)
+            key ^= Zobrist.EP_FILE[epSquare & 7];
+        epSquare = flag == Moves.DOUBLE_PUSH ? (from + to) >>> 1 : EMPTY;
+        if (epSquare != EMPTY)
+            key ^= Zobrist.EP_FILE[epSquare & 7];
+        key ^= Zobrist.SIDE;
+        halfmoveClock = captured != EMPTY || typeOf(moved) == ChessPiece.PAWN ? 0 : halfmoveClock + 1;
+        if (us == ChessPiece.BLACK)
+            fullmoveNumber++;
+        sideToMove = us ^ 1;
+        updateCheckInfo();
+    }
+
+    void unmakeMove(int move) {
+        int from = Moves.from(move), to = Moves.to(move), flag = Moves.flag(move);
+        int state = undo[--ply];
+        int captured = (state & 15) - 1;
+        sideToMove ^= 1;
+        int us = sideToMove;
+        if (us == ChessPiece.BLACK)
+            fullmoveNumber--;
+
+        if (Moves.promotion(move) != 0) {
+            removePiece(to);
+            putPiece(us, ChessPiece.PAWN, to);
+        }
+        movePiece(to, from);
+        if (flag == Moves.CASTLE) {
+            if (to > from)
+                movePiece(to - 1, to + 1);
+            else
+                movePiece(to + 1, to - 2);
+        }
+        if (flag == Moves.EN_PASSANT)
+            putPiece(us ^ 1, ChessPiece.PAWN, to + (us == ChessPiece.WHITE ? -8 : 8));
+        else if (captured != EMPTY)
+            putPiece(colorOf(captured), typeOf(captured), to);
+
+        castlingRights = (state >>> 4) & 15;
+        epSquare = ((state >>> 8) & 127) - 1;
+        halfmoveClock = state >>> 15;
+        key = keys[ply];
+        checkers = checkInfo[2 * ply];
+        pinned = checkInfo[2 * ply + 1];
+    }
+}
@@ -0,0 +1,142 @@
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Zobrist key -> game record offset, as a sorted array of (key, offset)
+// pairs in a memory-mapped file, so finding the games that reach a
+// position is a binary search rather than a scan of the games.
+//
+// Layout: magic, reserved int, entry count, then 16-byte entries sorted
+// by key and then offset. Files over 1 GB are mapped in segments.
+final class PositionIndex implements Closeable {
+    static final int MAGIC = 0x43504931; // "CPI1"
+    private static final int HEADER = 16, ENTRY = 16;
+    private static final int SEGMENT_SHIFT = 30;
+    private static final long SEGMENT_MASK = (1L << SEGMENT_SHIFT) - 1;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer[] segments;
+    private final long count;
+
+    private PositionIndex(FileChannel channel, MappedByteBuffer[] segments, long count) {
+        this.channel = channel;
+        this.segments = segments;
+        this.count = count;
+    }
+
+    static PositionIndex open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        long size = channel.size();
+        List<MappedByteBuffer> segments = new ArrayList<>();
+        for (long start = 0; start < size; start += 1L << SEGMENT_SHIFT) {
+            long length = Math.min(1L << SEGMENT_SHIFT, size - start);
+            segments.add(channel.map(FileChannel.MapMode.READ_ONLY, start, length));
+        }
+        MappedByteBuffer[] mapped = segments.toArray(new MappedByteBuffer[0]);
+        if (size < HEADER || mapped[0].getInt(0) != MAGIC) {
+            channel.close();
+            throw new IOException("Not a position index: " + path);
+        }
+        long count = mapped[0].getLong(8);
+        if (HEADER + count * ENTRY != size) {
+            channel.close();
+            throw new IOException("Truncated position index: " + path);
+        }
+        return new PositionIndex(channel, mapped, count);
+    }
+
+    long size() {
+        return count;
+    }
+
+    // Offsets of all games that reach the position, in file order
+    long[] find(long key) {
+        long lo = 0, hi = count;
+        while (lo < hi) {
+            long mid = (lo + hi) >>> 1;
+            if (Long.compareUnsigned(keyAt(mid), key) < 0)
+                lo = mid + 1;
+            else
+                hi = mid;
+        }
+        long[] offsets = new long[8];
+        int found = 0;
+        for (long i = lo; i < count && keyAt(i) == key; i++) {
+            if (found == offsets.length)
+                offsets = Arrays.copyOf(offsets, found * 2);
+            offsets[found++] = offsetAt(i);
+        }
+        return Arrays.copyOf(offsets, found);
+    }
+
+    private long keyAt(long i) {
+        return readLong(HEADER + i * ENTRY);
+    }
+
+    private long offsetAt(long i) {
+        return readLong(HEADER + i * ENTRY + 8);
+    }
+
+    // Entries never straddle a segment since both sizes are multiples of 16
+    private long readLong(long position) {
+        return segments[(int) (position >>> SEGMENT_SHIFT)].getLong((int) (position & SEGMENT_MASK));
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    // Sorts entries through a PairSorter and writes the index on finish,
+    // so building needs the same memory for any number of games
+    static final class Builder {
+        private final Path path;
+        private final PairSorter sorter;
+
+        Builder(Path path) {
+            this.path = path;
+            this.sorter = new PairSorter(path.toAbsolutePath().getParent());
+        }
+
+        void add(long key, long offset) throws IOException {
+            sorter.add(key, offset);
+        }
+
+        void finish() throws IOException {
+            Path partial = path.resolveSibling(path.getFileName() + ".tmp");
+            long[] total = new long[1];
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(partial), 1 << 16))) {
+                out.writeInt(MAGIC);
+                out.writeInt(0);
+                out.writeLong(0);
+                long[] last = { 0, -1 };
+                sorter.merge((key, offset) -> {
+                    // A position repeated within a game is listed once
+                    if (key == last[0] && offset == last[1])
+                        return;
+                    out.writeLong(key);
+                    out.writeLong(offset);
+                    last[0] = key;
+                    last[1] = offset;
+                    total[0]++;
+                });
+            }
+            try (FileChannel channel = FileChannel.open(partial, StandardOpenOption.WRITE)) {
+                channel.write(ByteBuffer.allocate(8).putLong(0, total[0]), 8);
+            }
+            Files.move(partial, path, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
@@ -0,0 +1,486 @@
+import java.util.Arrays;
+import jdk.jfr.FlightRecorder;
+
+// Iterative-deepening negamax with alpha-beta pruning and a capture-only
+// quiescence search. Moves are ordered by the transposition table move,
+// MVV-LVA for captures, then killer moves, then the history heuristic.
+// One instance is one search thread; see Engine for running several.
+final class Search {
+    static final int INFINITY = 32000;
+    static final int MATE = 30000;
+    static final int MAX_PLY = 64;
+    // Tablebase wins score TB_WIN less the plies to mate; KNOWN_WIN bounds
+    // every score that counts plies from a mate, which the TT stores
+    // relative to the node
+    static final int TB_WIN = 20000;
+    static final int KNOWN_WIN = TB_WIN - 256;
+
+    private static final int TT_MOVE_SCORE = 1 << 30;
+    private static final int CAPTURE_SCORE = 1 << 24;
+    private static final int KILLER_SCORE = 1 << 22;
+
+    private final int[][] moves = new int[MAX_PLY + 1][MoveGenerator.MAX_MOVES];
+    private final int[][] scores = new int[MAX_PLY + 1][MoveGenerator.MAX_MOVES];
+    private final int[][] killers = new int[MAX_PLY + 1][2];
+    private final int[][][] history = new int[2][64][64];
+    private final TranspositionTable tt;
+    private final Evaluator evaluator = new Evaluator();
+    private final int id;
+    private final SearchLimits limits;
+    private final Tablebase tablebase = Tablebase.getDefault();
+
+    private Position pos;
+    private boolean stopped;
+    private long nodes;
+    private int bestRootMove;
+    private int bestRootScore;
+    private int completedDepth;
+    private long ttProbes;
+    private long ttHits;
+    private long tbProbes;
+    private long tbHits;
+    // Statistics for telemetry; plain fields since each thread has its own
+    // Search, summed by Engine once the search is over
+    private int selDepth;
+    private long cutoffs;
+    private long firstMoveCutoffs;
+    private Runnable iterationListener;
+
+    // Thread 0 is the main thread; helpers share its table and limits
+    Search(TranspositionTable tt, int id, SearchLimits limits) {
+        this.tt = tt;
+        this.id = id;
+        this.limits = limits;
+    }
+
+    // Spend a slice of the remaining clock on each move, leaving a reserve
+    static long allocateTime(long remainingMillis) {
+        return allocateTime(remainingMillis, 0, 0);
+    }
+
+    static long allocateTime(long remainingMillis, long incrementMillis, int movesToGo) {
+        long moves = movesToGo > 0 ? Math.min(movesToGo, 30) : 30;
+        long budget = remainingMillis / moves + incrementMillis * 3 / 4;
+        return Math.max(Math.min(50, remainingMillis / 4), Math.min(budget, remainingMillis / 2));
+    }
+
+    // Called on the searching thread after each completed iteration
+    void setIterationListener(Runnable listener) {
+        this.iterationListener = listener;
+    }
+
+    int findBestMove(Position root, int maxDepth) {
+        pos = root.copy();
+        stopped = false;
+        nodes = 0;
+        ttProbes = 0;
+        ttHits = 0;
+        tbProbes = 0;
+        tbHits = 0;
+        selDepth = 0;
+        cutoffs = 0;
+        firstMoveCutoffs = 0;
+        completedDepth = 0;
+        bestRootMove = Moves.NONE;
+        bestRootScore = 0;
+        for (int[] k : killers)
+            k[0] = k[1] = Moves.NONE;
+        for (int[][] side : history) {
+            for (int[] row : side)
+                Arrays.fill(row, 0);
+        }
+
+        int count = MoveGenerator.generateLegal(pos, moves[0]);
+        if (count == 0)
+            return Moves.NONE;
+        // A position in the tablebases needs no search
+        if (Long.bitCount(pos.occupied) <= tablebase.getMaxMen()) {
+            tbProbes++;
+            int move = tablebase.bestMove(pos);
+            if (move != Moves.NONE) {
+                tbHits++;
+                pos.makeMove(move);
+                bestRootScore = -tablebaseScore(tablebase.probe(pos), 1);
+                pos.unmakeMove(move);
+                bestRootMove = move;
+                completedDepth = 1;
+                if (id == 0 && iterationListener != null)
+                    iterationListener.run();
+                return move;
+            }
+        }
+        long entry = probe(pos.key);
+        bestRootMove = entry != 0 && contains(moves[0], count, TranspositionTable.move(entry))
+                ? TranspositionTable.move(entry)
+                : moves[0][0];
+        if (count == 1)
+            return bestRootMove;
+
+        // Helpers start one ply deeper on odd threads so the threads spread
+        // over different depths and fill the shared table for each other
+        for (int depth = 1 + (id & 1); depth <= Math.min(maxDepth, MAX_PLY - 1); depth++) {
+            int previousBest = bestRootMove;
+            long startNodes = nodes;
+            IterationEvent event = id == 0 && FlightRecorder.isInitialized() ? new IterationEvent() : null;
+            if (event != null)
+                event.begin();
+            int score = searchRoot(depth, count);
+            if (stopped) {
+                // A partial iteration is only trusted if it finished the first move
+                if (bestRootMove == Moves.NONE)
+                    bestRootMove = previousBest;
+                break;
+            }
+            bestRootScore = score;
+            completedDepth = depth;
+            if (event != null && event.shouldCommit()) {
+                event.depth = depth;
+                event.selDepth = selDepth;
+                event.score = score;
+                event.nodes = nodes - startNodes;
+                event.branchingFactor = getBranchingFactor();
+                event.bestMove = Moves.toUci(bestRootMove);
+                event.commit();
+            }
+            tt.store(pos.key, bestRootMove, score, depth, TranspositionTable.EXACT);
+            // Helpers keep going until the main thread stops them
+            if (id != 0)
+                continue;
+            if (iterationListener != null)
+                iterationListener.run();
+            if (Math.abs(score) >= MATE - MAX_PLY)
+                break;
+            // Another iteration will take several times longer than this one
+            if (System.currentTimeMillis() >= limits.softDeadline)
+                break;
+        }
+        return bestRootMove;
+    }
+
+    long getNodes() {
+        return nodes;
+    }
+
+    int getScore() {
+        return bestRootScore;
+    }
+
+    int getBestMove() {
+        return bestRootMove;
+    }
+
+    int getCompletedDepth() {
+        return completedDepth;
+    }
+
+    long getTableProbes() {
+        return ttProbes;
+    }
+
+    long getTableHits() {
+        return ttHits;
+    }
+
+    long getTablebaseProbes() {
+        return tbProbes;
+    }
+
+    long getTablebaseHits() {
+        return tbHits;
+    }
+
+    int getSelDepth() {
+        return selDepth;
+    }
+
+    long getCutoffs() {
+        return cutoffs;
+    }
+
+    long getFirstMoveCutoffs() {
+        return firstMoveCutoffs;
+    }
+
+    // The b of nodes = b^depth over this thread's whole search
+    double getBranchingFactor() {
+        return completedDepth == 0 ? 0 : Math.pow(nodes, 1.0 / completedDepth);
+    }
+
+    // The score of a tablebase value at this ply
+    static int tablebaseScore(int value, int ply) {
+        if (value > 0)
+            return TB_WIN - ply - (value - 1);
+        if (value < 0)
+            return -TB_WIN + ply + (-value - 1);
+        return 0;
+    }
+
+    // Plies to mate for a score in the mate or tablebase range, else -1
+    static int pliesToMate(int score) {
+        int magnitude = Math.abs(score);
+        if (magnitude >= MATE - MAX_PLY)
+            return MATE - magnitude;
+        if (magnitude >= KNOWN_WIN)
+            return TB_WIN - magnitude;
+        return -1;
+    }
+
+    private long probe(long key) {
+        ttProbes++;
+        long entry = tt.probe(key);
+        if (entry != 0)
+            ttHits++;
+        return entry;
+    }
+
+    private static boolean contains(int[] list, int count, int move) {
+        for (int i = 0; i < count; i++) {
+            if (list[i] == move)
+                return true;
+        }
+        return false;
+    }
+
+    private int searchRoot(int depth, int count) {
+        int[] list = moves[0];
+        // Search the previous iteration's best move first
+        for (int i = 0; i < count; i++) {
+            if (list[i] == bestRootMove) {
+                list[i] = list[0];
+                list[0] = bestRootMove;
+                break;
+            }
+        }
+        int alpha = -INFINITY;
+        int best = Moves.NONE;
+        for (int i = 0; i < count; i++) {
+            int move = list[i];
+            pos.makeMove(move);
+            int score = -negamax(depth - 1, 1, -INFINITY, -alpha);
+            pos.unmakeMove(move);
+            if (stopped)
+                break;
+            if (score > alpha) {
+                alpha = score;
+                best = move;
+            }
+        }
+        bestRootMove = best;
+        return alpha;
+    }
+
+    private int negamax(int depth, int ply, int alpha, int beta) {
+        boolean inCheck = pos.inCheck();
+        if (inCheck)
+            depth++;
+        if (depth <= 0)
+            return quiescence(ply, alpha, beta);
+        if (checkTime())
+            return 0;
+        nodes++;
+        if (ply > selDepth)
+            selDepth = ply;
+        if (ply > 0 && isDraw(ply, inCheck))
+            return 0;
+        if (ply >= MAX_PLY)
+            return evaluator.evaluate(pos);
+        if (Long.bitCount(pos.occupied) <= tablebase.getMaxMen()) {
+            tbProbes++;
+            int value = tablebase.probe(pos);
+            if (value != Tablebase.UNKNOWN) {
+                tbHits++;
+                return tablebaseScore(value, ply);
+            }
+        }
+
+        int originalAlpha = alpha;
+        int ttMove = Moves.NONE;
+        long entry = probe(pos.key);
+        if (entry != 0) {
+            ttMove = TranspositionTable.move(entry);
+            if (TranspositionTable.depth(entry) >= depth) {
+                int score = fromTable(TranspositionTable.score(entry), ply);
+                int bound = TranspositionTable.bound(entry);
+                if (bound == TranspositionTable.EXACT
+                        || (bound == TranspositionTable.LOWER && score >= beta)
+                        || (bound == TranspositionTable.UPPER && score <= alpha))
+                    return score;
+            }
+        }
+
+        int us = pos.sideToMove;
+        int[] list = moves[ply];
+        int count = inCheck ? MoveGenerator.generateEvasions(pos, list, 0)
+                : MoveGenerator.generatePseudoLegal(pos, list, 0, false);
+        scoreMoves(list, scores[ply], count, ply, ttMove);
+
+        int legal = 0;
+        int bestScore = -INFINITY;
+        int bestMove = Moves.NONE;
+        for (int i = 0; i < count; i++) {
+            int move = pickNext(list, scores[ply], i, count);
+            boolean verify = MoveGenerator.needsLegalityCheck(pos, move);
+            pos.makeMove(move);
+            if (verify && pos.isAttacked(pos.kingSquare(us), us ^ 1)) {
+                pos.unmakeMove(move);
+                continue;
+            }
+            legal++;
+            int score = -negamax(depth - 1, ply + 1, -beta, -alpha);
+            pos.unmakeMove(move);
+            if (stopped)
+                return 0;
+            if (score > bestScore) {
+                bestScore = score;
+                bestMove = move;
+                if (score > alpha) {
+                    alpha = score;
+                    if (score >= beta) {
+                        cutoffs++;
+                        if (legal == 1)
+                            firstMoveCutoffs++;
+                        if (isQuiet(move)) {
+                            updateKillers(ply, move);
+                            history[us][Moves.from(move)][Moves.to(move)] += depth * depth;
+                        }
+                        break;
+                    }
+                }
+            }
+        }
+        if (legal == 0)
+            return inCheck ? -MATE + ply : 0;
+
+        int bound = bestScore >= beta ? TranspositionTable.LOWER
+                : bestScore > originalAlpha ? TranspositionTable.EXACT : TranspositionTable.UPPER;
+        tt.store(pos.key, bound == TranspositionTable.UPPER ? Moves.NONE : bestMove,
+                toTable(bestScore, ply), depth, bound);
+        return bestScore;
+    }
+
+    // Mate scores are stored relative to the node, not the root
+    private static int toTable(int score, int ply) {
+        if (score >= KNOWN_WIN)
+            return score + ply;
+        if (score <= -KNOWN_WIN)
+            return score - ply;
+        return score;
+    }
+
+    private static int fromTable(int score, int ply) {
+        if (score >= KNOWN_WIN)
+            return score - ply;
+        if (score <= -KNOWN_WIN)
+            return score + ply;
+        return score;
+    }
+
+    // Any repetition counts: the side that could avoid it will if it is
+    // losing, so a second occurrence is scored like the third. Checkmate
+    // takes precedence over the fifty-move rule.
+    private boolean isDraw(int ply, boolean inCheck) {
+        if (pos.isRepetition())
+            return true;
+        return pos.halfmoveClock >= 100 && (!inCheck || MoveGenerator.hasLegalMove(pos, moves[ply]));
+    }
+
+    private int quiescence(int ply, int alpha, int beta) {
+        if (checkTime())
+            return 0;
+        nodes++;
+        if (ply > selDepth)
+            selDepth = ply;
+        int standPat = evaluator.evaluate(pos);
+        if (standPat >= beta || ply >= MAX_PLY)
+            return standPat;
+        if (standPat > alpha)
+            alpha = standPat;
+
+        int us = pos.sideToMove;
+        int[] list = moves[ply];
+        int count = MoveGenerator.generatePseudoLegal(pos, list, 0, true);
+        scoreMoves(list, scores[ply], count, ply, Moves.NONE);
+        for (int i = 0; i < count; i++) {
+            int move = pickNext(list, scores[ply], i, count);
+            boolean verify = MoveGenerator.needsLegalityCheck(pos, move);
+            pos.makeMove(move);
+            if (verify && pos.isAttacked(pos.kingSquare(us), us ^ 1)) {
+                pos.unmakeMove(move);
+                continue;
+            }
+            int score = -quiescence(ply + 1, -beta, -alpha);
+            pos.unmakeMove(move);
+            if (stopped)
+                return 0;
+            if (score > alpha) {
+                alpha = score;
+                if (score >= beta)
+                    break;
+            }
+        }
+        return alpha;
+    }
+
+    private void scoreMoves(int[] list, int[] score, int count, int ply, int ttMove) {
+        int us = pos.sideToMove;
+        for (int i = 0; i < count; i++) {
+            int move = list[i];
+            int victim = victimType(move);
+            if (move == ttMove) {
+                score[i] = TT_MOVE_SCORE;
+            } else if (victim >= 0 || Moves.promotion(move) != 0) {
+                int victimValue = victim >= 0 ? Evaluator.VALUES[victim] : 0;
+                int attacker = Position.typeOf(pos.board[Moves.from(move)]);
+                score[i] = CAPTURE_SCORE + victimValue * 8 + Evaluator.VALUES[Moves.promotion(move)] - attacker;
+            } else if (move == killers[ply][0]) {
+                score[i] = KILLER_SCORE + 1;
+            } else if (move == killers[ply][1]) {
+                score[i] = KILLER_SCORE;
+            } else {
+                score[i] = Math.min(history[us][Moves.from(move)][Moves.to(move)], KILLER_SCORE - 1);
+            }
+        }
+    }
+
+    // Selection sort step: swap the best remaining move into slot i
+    private static int pickNext(int[] list, int[] score, int i, int count) {
+        int best = i;
+        for (int j = i + 1; j < count; j++) {
+            if (score[j] > score[best])
+                best = j;
+        }
+        int move = list[best];
+        list[best] = list[i];
+        list[i] = move;
+        int s = score[best];
+        score[best] = score[i];
+        score[i] = s;
+        return move;
+    }
+
+    private int victimType(int move) {
+        if (Moves.flag(move) == Moves.EN_PASSANT)
+            return ChessPiece.PAWN;
+        int captured = pos.board[Moves.to(move)];
+        return captured == Position.EMPTY ? -1 : Position.typeOf(captured);
+    }
+
+    private boolean isQuiet(int move) {
+        return pos.board[Moves.to(move)] == Position.EMPTY && Moves.promotion(move) == 0
+                && Moves.flag(move) != Moves.EN_PASSANT;
+    }
+
+    private void updateKillers(int ply, int move) {
+        if (killers[ply][0] != move) {
+            killers[ply][1] = killers[ply][0];
+            killers[ply][0] = move;
+        }
+    }
+
+    private boolean checkTime() {
+        if (!stopped && (nodes & 1023) == 0 && (limits.stop || System.currentTimeMillis() >= limits.deadline
+                || (id == 0 && nodes >= limits.nodeLimit)))
+            stopped = true;
+        return stopped;
+    }
+}
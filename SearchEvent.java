@@ -0,0 +1,64 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Percentage;
+
+// One engine search, recorded by JDK Flight Recorder when enabled, e.g.
+// with -XX:StartFlightRecording; the fields mirror SearchStats
+@Name("chess.Search")
+@Label("Engine Search")
+@Category({ "Chess", "Engine" })
+@Description("One search for a move, with all search threads summed")
+final class SearchEvent extends jdk.jfr.Event {
+    @Label("Depth")
+    int depth;
+
+    @Label("Selective Depth")
+    int selDepth;
+
+    @Label("Nodes")
+    long nodes;
+
+    @Label("Nodes per Second")
+    long nps;
+
+    @Label("Branching Factor")
+    double branchingFactor;
+
+    @Label("TT Hit Rate")
+    @Percentage
+    double ttHitRate;
+
+    @Label("First Move Cutoff Rate")
+    @Description("Share of beta cutoffs caused by the first move searched")
+    @Percentage
+    double firstMoveCutoffRate;
+
+    @Label("Threads")
+    int threads;
+
+    @Label("Score")
+    int score;
+
+    @Label("Best Move")
+    String bestMove;
+
+    @Label("Ponder Miss")
+    @Description("A ponder search that was stopped on a miss")
+    boolean ponderMiss;
+
+    void set(SearchStats stats, boolean ponderMiss) {
+        depth = stats.depth;
+        selDepth = stats.selDepth;
+        nodes = stats.nodes;
+        nps = stats.nps();
+        branchingFactor = stats.branchingFactor;
+        ttHitRate = stats.ttHitRate();
+        firstMoveCutoffRate = stats.firstMoveCutoffRate();
+        threads = stats.threads;
+        score = stats.score;
+        bestMove = Moves.toUci(stats.bestMove);
+        this.ponderMiss = ponderMiss;
+    }
+}
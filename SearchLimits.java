@@ -0,0 +1,65 @@
+// Stop flag and deadlines shared by all threads of one search. A ponder
+// search runs without deadlines until ponderHit() gives it the time the
+// move is actually allowed, counted from when pondering started.
+final class SearchLimits {
+    static final long INFINITE = Long.MAX_VALUE / 4;
+
+    volatile boolean stop;
+    volatile long deadline = Long.MAX_VALUE;
+    // Past this point no new iteration is started
+    volatile long softDeadline = Long.MAX_VALUE;
+    // Checked by the main thread only, against its own node count
+    volatile long nodeLimit = Long.MAX_VALUE;
+
+    private long startTime;
+    private boolean pondering;
+    private long pendingHit = -1;
+
+    synchronized void start(long timeMillis, boolean ponder, long nodes) {
+        stop = false;
+        nodeLimit = nodes;
+        startTime = System.currentTimeMillis();
+        // A ponder hit that arrived before the ponder search got going
+        if (ponder && pendingHit >= 0) {
+            ponder = false;
+            timeMillis = pendingHit;
+        }
+        pendingHit = -1;
+        pondering = ponder;
+        if (ponder) {
+            deadline = Long.MAX_VALUE;
+            softDeadline = Long.MAX_VALUE;
+        } else {
+            setBudget(timeMillis);
+        }
+    }
+
+    synchronized void ponderHit(long timeMillis) {
+        if (!pondering) {
+            pendingHit = timeMillis;
+            return;
+        }
+        pondering = false;
+        setBudget(timeMillis);
+    }
+
+    // Still waiting for a ponder hit, so a stop now means a miss
+    synchronized boolean isPondering() {
+        return pondering;
+    }
+
+    synchronized void finish() {
+        pondering = false;
+        stop = true;
+    }
+
+    synchronized void cancel() {
+        pendingHit = -1;
+        stop = true;
+    }
+
+    private void setBudget(long timeMillis) {
+        softDeadline = startTime + timeMillis / 2;
+        deadline = startTime + timeMillis;
+    }
+}
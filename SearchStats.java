@@ -0,0 +1,70 @@
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Locale;
+
+// What one engine search did, summed over its threads once it is over.
+// Searches count into per-thread fields and nothing here is touched
+// while they run. With -Dchess.stats=<file> every search is appended to
+// the file as one JSON line.
+final class SearchStats {
+    private static final String DUMP_FILE = System.getProperty("chess.stats");
+    private static boolean dumpFailed;
+
+    final int depth, selDepth, threads, score, bestMove;
+    final long nodes, nanos, ttProbes, ttHits, cutoffs, firstMoveCutoffs;
+    final double branchingFactor;
+
+    SearchStats(int depth, int selDepth, int threads, int score, int bestMove, long nodes, long nanos,
+            long ttProbes, long ttHits, long cutoffs, long firstMoveCutoffs, double branchingFactor) {
+        this.depth = depth;
+        this.selDepth = selDepth;
+        this.threads = threads;
+        this.score = score;
+        this.bestMove = bestMove;
+        this.nodes = nodes;
+        this.nanos = nanos;
+        this.ttProbes = ttProbes;
+        this.ttHits = ttHits;
+        this.cutoffs = cutoffs;
+        this.firstMoveCutoffs = firstMoveCutoffs;
+        this.branchingFactor = branchingFactor;
+    }
+
+    long millis() {
+        return nanos / 1_000_000;
+    }
+
+    long nps() {
+        return nanos == 0 ? 0 : nodes * 1_000_000_000 / nanos;
+    }
+
+    double ttHitRate() {
+        return ttProbes == 0 ? 0 : (double) ttHits / ttProbes;
+    }
+
+    double firstMoveCutoffRate() {
+        return cutoffs == 0 ? 0 : (double) firstMoveCutoffs / cutoffs;
+    }
+
+    String toJson() {
+        return String.format(Locale.ROOT, "{\"depth\":%d,\"seldepth\":%d,\"nodes\":%d,\"nps\":%d,\"millis\":%d"
+                + ",\"ebf\":%.2f,\"tt_hit_rate\":%.4f,\"first_move_cutoff_rate\":%.4f,\"threads\":%d"
+                + ",\"score\":%d,\"bestmove\":\"%s\"}", depth, selDepth, nodes, nps(), millis(), branchingFactor,
+                ttHitRate(), firstMoveCutoffRate(), threads, score, Moves.toUci(bestMove));
+    }
+
+    static synchronized void dump(SearchStats stats) {
+        if (DUMP_FILE == null || dumpFailed)
+            return;
+        try {
+            Files.write(Paths.get(DUMP_FILE), (stats.toJson() + "\n").getBytes(StandardCharsets.UTF_8),
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            dumpFailed = true;
+            System.err.println("Could not write search stats to " + DUMP_FILE + ": " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,51 @@
+// One game hosted by GameServer: the position, the side the client plays
+// and how the game ended. Nothing Swing and no move list of its own; the
+// position's undo stack is the history, so thousands of games fit in a
+// small heap.
+final class ServerGame {
+    final Position position;
+    final int clientColor;
+    // "1-0", "0-1" or "1/2-1/2" and why, or null while the game is on
+    private String result, termination;
+
+    ServerGame(Position position, int clientColor) {
+        this.position = position;
+        this.clientColor = clientColor;
+    }
+
+    boolean isOver() {
+        return result != null;
+    }
+
+    boolean isClientToMove() {
+        return position.sideToMove == clientColor;
+    }
+
+    // Plays a legal move and decides whether it ended the game
+    void play(int move, int[] buffer) {
+        position.makeMove(move);
+        update(buffer);
+    }
+
+    void update(int[] buffer) {
+        if (!MoveGenerator.hasLegalMove(position, buffer)) {
+            boolean mate = position.inCheck();
+            result = !mate ? "1/2-1/2" : position.sideToMove == ChessPiece.WHITE ? "0-1" : "1-0";
+            termination = mate ? "checkmate" : "stalemate";
+        } else if (position.repetitions() >= 2) {
+            result = "1/2-1/2";
+            termination = "repetition";
+        } else if (position.halfmoveClock >= 100) {
+            result = "1/2-1/2";
+            termination = "fifty-moves";
+        } else if (position.insufficientMaterial()) {
+            result = "1/2-1/2";
+            termination = "material";
+        }
+    }
+
+    // "result 1-0 checkmate", for the protocol
+    String describeResult() {
+        return "result " + result + " " + termination;
+    }
+}
@@ -0,0 +1,172 @@
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.util.concurrent.Future;
+
+// Simultaneous exhibition: the computer plays white on every board of one
+// window against a human on each. Computer moves come from one shared
+// EnginePool; the event thread only applies finished moves, so the
+// window stays responsive however many boards are live.
+class SimulWindow extends JFrame {
+    private static final long serialVersionUID = 1L;
+    private static final long MOVE_MILLIS = 2000;
+
+    private final EnginePool pool;
+    private final SimulBoard[] boards;
+    private final JLabel summaryLabel = new JLabel();
+    private boolean open = true;
+
+    SimulWindow(int boardCount, String difficulty, String boardColor, String pieceStyle, int engineThreads) {
+        pool = new EnginePool(engineThreads, Integer.getInteger("chess.hash", 16), difficulty, MOVE_MILLIS);
+        boards = new SimulBoard[boardCount];
+
+        setTitle("Simultaneous Exhibition: " + boardCount + " boards");
+        setDefaultCloseOperation(JFrame.DISPOSE_ON_CLOSE);
+        setLayout(new BorderLayout());
+        summaryLabel.setHorizontalAlignment(JLabel.CENTER);
+        summaryLabel.setBorder(BorderFactory.createEmptyBorder(8, 0, 8, 0));
+        add(summaryLabel, BorderLayout.NORTH);
+
+        int columns = (int) Math.ceil(Math.sqrt(boardCount));
+        JPanel grid = new JPanel(new GridLayout(0, columns, 8, 8));
+        grid.setBorder(BorderFactory.createEmptyBorder(8, 8, 8, 8));
+        for (int i = 0; i < boardCount; i++) {
+            boards[i] = new SimulBoard(i + 1, boardColor, pieceStyle);
+            grid.add(boards[i].panel);
+        }
+        JScrollPane scroll = new JScrollPane(grid);
+        scroll.getVerticalScrollBar().setUnitIncrement(24);
+        add(scroll, BorderLayout.CENTER);
+
+        addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosed(WindowEvent e) {
+                open = false;
+                for (SimulBoard board : boards) {
+                    if (board.pending != null)
+                        board.pending.cancel(true);
+                }
+                pool.shutdown();
+            }
+        });
+
+        Dimension screen = Toolkit.getDefaultToolkit().getScreenSize();
+        pack();
+        setSize(Math.min(getWidth(), screen.width - 40), Math.min(getHeight(), screen.height - 80));
+        setLocationRelativeTo(null);
+        setVisible(true);
+        for (SimulBoard board : boards)
+            board.requestEngineMove();
+    }
+
+    private void updateSummary() {
+        int thinking = 0, waiting = 0, finished = 0;
+        for (SimulBoard board : boards) {
+            if (board.over)
+                finished++;
+            else if (board.pending != null)
+                thinking++;
+            else
+                waiting++;
+        }
+        summaryLabel.setText(String.format("%d boards: computer to move on %d, your move on %d, %d finished"
+                + ", %d engine threads, %d ms per move", boards.length, thinking, waiting, finished,
+                pool.getThreads(), pool.budget()));
+    }
+
+    private final class SimulBoard {
+        final int number;
+        final Position position = Position.startPosition();
+        final BoardView view;
+        final JLabel status = new JLabel();
+        final JPanel panel = new JPanel(new BorderLayout());
+        final int[] moves = new int[MoveGenerator.MAX_MOVES];
+        int selected = -1;
+        boolean over;
+        Future<?> pending;
+
+        SimulBoard(int number, String boardColor, String pieceStyle) {
+            this.number = number;
+            view = new BoardView(boardColor, pieceStyle, this::squareClicked);
+            view.setPreferredSize(new Dimension(240, 240));
+            view.setPosition(position, Moves.NONE);
+            status.setHorizontalAlignment(JLabel.CENTER);
+            panel.add(status, BorderLayout.NORTH);
+            panel.add(view, BorderLayout.CENTER);
+        }
+
+        void squareClicked(int row, int col) {
+            if (over || pending != null)
+                return;
+            int sq = Position.square(row, col);
+            int piece = position.board[sq];
+            if (piece != Position.EMPTY && Position.colorOf(piece) == position.sideToMove) {
+                selected = sq;
+                view.setSelected(row, col);
+                return;
+            }
+            if (selected < 0)
+                return;
+            int move = Moves.NONE;
+            int count = MoveGenerator.generateLegal(position, moves);
+            for (int i = 0; i < count && move == Moves.NONE; i++) {
+                if (Moves.from(moves[i]) == selected && Moves.to(moves[i]) == sq)
+                    move = moves[i];
+            }
+            selected = -1;
+            view.setSelected(-1, -1);
+            if (move == Moves.NONE)
+                return;
+            // No dialog per board: promotions are to a queen
+            if (Moves.promotion(move) != 0)
+                move = Moves.withPromotion(move, ChessPiece.QUEEN);
+            play(move);
+            if (!over)
+                requestEngineMove();
+            else
+                updateSummary();
+        }
+
+        void requestEngineMove() {
+            status.setText("Board " + number + ": computer thinking...");
+            long key = position.key;
+            pending = pool.submit(position, move -> SwingUtilities.invokeLater(() -> engineMoved(key, move)));
+            updateSummary();
+        }
+
+        private void engineMoved(long key, int move) {
+            if (!open || position.key != key)
+                return;
+            pending = null;
+            if (move != Moves.NONE)
+                play(move);
+            updateSummary();
+        }
+
+        private void play(int move) {
+            position.makeMove(move);
+            view.setPosition(position, move);
+            if (!MoveGenerator.hasLegalMove(position, moves)) {
+                over = true;
+                boolean mated = position.inCheck();
+                boolean computerWon = mated && position.sideToMove == ChessPiece.BLACK;
+                status.setText("Board " + number + ": " + (!mated ? "stalemate, 1/2-1/2"
+                        : computerWon ? "computer wins, 1-0" : "you win, 0-1"));
+            } else if (position.repetitions() >= 2) {
+                drawn("threefold repetition");
+            } else if (position.halfmoveClock >= 100) {
+                drawn("fifty-move rule");
+            } else if (position.insufficientMaterial()) {
+                drawn("insufficient material");
+            } else if (position.sideToMove == ChessPiece.BLACK) {
+                status.setText("Board " + number + ": your move");
+            }
+        }
+
+        private void drawn(String reason) {
+            over = true;
+            status.setText("Board " + number + ": " + reason + ", 1/2-1/2");
+        }
+    }
+}
@@ -0,0 +1,208 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+// Endgame tablebases: the exact result and distance to mate of every
+// position with a given material, as written by TablebaseGenerator. Each
+// table is a file of one signed byte per position, 0 for a draw, n > 0
+// when the side to move mates in n - 1 plies and n < 0 when it is mated
+// in -n - 1. Files are memory-mapped once and shared by every engine and
+// search thread in the process.
+//
+// Tables are stored with the stronger side as white; positions with the
+// colours the other way round are mirrored on lookup. Positions with
+// castling rights or an en passant capture are not covered, and the
+// fifty-move rule is ignored.
+final class Tablebase {
+    static final int UNKNOWN = Integer.MIN_VALUE;
+    static final String EXTENSION = ".ctb";
+    static final int MAGIC = 0x43544231; // "CTB1"
+    static final int HEADER = 16;
+    // Larger tables would not fit one mapping
+    static final int MAX_MEN = 4;
+
+    private static Tablebase defaultTablebase;
+
+    private final Table[] slots = new Table[64];
+    private final long[] slotKeys = new long[64];
+    private final boolean[] slotFlipped = new boolean[64];
+    private int maxMen;
+    private int tableCount;
+
+    // One material combination, stronger side first: types[i] is the
+    // type of the i-th indexed piece and roles[i] 0 for the stronger side
+    static final class Table {
+        final String name;
+        final int[] types, roles;
+        final ByteBuffer data;
+
+        Table(String name, ByteBuffer data) {
+            this.name = name;
+            this.data = data;
+            String pieces = name.replace("v", "");
+            types = new int[pieces.length()];
+            roles = new int[pieces.length()];
+            int split = name.indexOf('v');
+            for (int i = 0; i < pieces.length(); i++) {
+                types[i] = "PNBRQK".indexOf(pieces.charAt(i));
+                roles[i] = i < split ? 0 : 1;
+            }
+        }
+
+        int men() {
+            return types.length;
+        }
+
+        static long size(int men) {
+            return 2L << (6 * men);
+        }
+
+        // Index of a position in table orientation: side to move, then the
+        // squares in table order, identical pieces by ascending square
+        int index(Position pos, boolean flip) {
+            int index = flip ? pos.sideToMove ^ 1 : pos.sideToMove;
+            for (int i = 0; i < types.length; i++) {
+                int color = flip ? roles[i] ^ 1 : roles[i];
+                long bb = pos.pieces[color][types[i]];
+                // Skip the identical pieces listed before this one
+                for (int j = i - 1; j >= 0 && types[j] == types[i] && roles[j] == roles[i]; j--)
+                    bb &= bb - 1;
+                int sq = Long.numberOfTrailingZeros(bb);
+                index = (index << 6) | (flip ? sq ^ 56 : sq);
+            }
+            return index;
+        }
+
+        long signature(int role) {
+            long sig = 0;
+            for (int i = 0; i < types.length; i++) {
+                if (roles[i] == role)
+                    sig += 1L << (4 * types[i]);
+            }
+            return sig;
+        }
+    }
+
+    // The tables in -Dchess.tablebases, or ./tablebases; empty when there
+    // are none
+    static synchronized Tablebase getDefault() {
+        if (defaultTablebase == null) {
+            defaultTablebase = new Tablebase();
+            Path directory = Paths.get(System.getProperty("chess.tablebases", "tablebases"));
+            try {
+                defaultTablebase.load(directory);
+            } catch (IOException e) {
+                System.err.println("Tablebases not loaded: " + e.getMessage());
+            }
+        }
+        return defaultTablebase;
+    }
+
+    void load(Path directory) throws IOException {
+        if (!Files.isDirectory(directory))
+            return;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + EXTENSION)) {
+            for (Path file : files)
+                load(file, file.getFileName().toString().replace(EXTENSION, ""));
+        }
+    }
+
+    private void load(Path file, String name) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            int men = name.length() - 1;
+            if (men > MAX_MEN || channel.size() != HEADER + Table.size(men))
+                throw new IOException("Not a tablebase: " + file);
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (mapped.getInt(0) != MAGIC)
+                throw new IOException("Not a tablebase: " + file);
+            add(new Table(name, mapped.position(HEADER).slice()));
+        }
+    }
+
+    synchronized void add(Table table) {
+        long strong = table.signature(0), weak = table.signature(1);
+        register((strong << 24) | weak, table, false);
+        if (strong != weak)
+            register((weak << 24) | strong, table, true);
+        maxMen = Math.max(maxMen, table.men());
+        tableCount++;
+    }
+
+    private void register(long key, Table table, boolean flipped) {
+        int slot = slot(key);
+        while (slots[slot] != null && slotKeys[slot] != key)
+            slot = (slot + 1) & (slots.length - 1);
+        slots[slot] = table;
+        slotKeys[slot] = key;
+        slotFlipped[slot] = flipped;
+    }
+
+    private static int slot(long key) {
+        return (int) ((key * 0x9E3779B97F4A7C15L) >>> 58);
+    }
+
+    int getMaxMen() {
+        return maxMen;
+    }
+
+    int getTableCount() {
+        return tableCount;
+    }
+
+    // The stored value for pos, or UNKNOWN when no table covers it
+    int probe(Position pos) {
+        int men = Long.bitCount(pos.occupied);
+        if (men == 2)
+            return 0;
+        if (men > maxMen || pos.castlingRights != 0)
+            return UNKNOWN;
+        // An en passant square matters only when the capture is possible
+        int us = pos.sideToMove;
+        if (pos.epSquare != Position.EMPTY
+                && (Attacks.PAWN[us ^ 1][pos.epSquare] & pos.pieces[us][ChessPiece.PAWN]) != 0)
+            return UNKNOWN;
+        long white = 0, black = 0;
+        for (int type = ChessPiece.PAWN; type <= ChessPiece.KING; type++) {
+            white += (long) Long.bitCount(pos.pieces[ChessPiece.WHITE][type]) << (4 * type);
+            black += (long) Long.bitCount(pos.pieces[ChessPiece.BLACK][type]) << (4 * type);
+        }
+        long key = (white << 24) | black;
+        for (int slot = slot(key); slots[slot] != null; slot = (slot + 1) & (slots.length - 1)) {
+            if (slotKeys[slot] == key) {
+                Table table = slots[slot];
+                return table.data.get(table.index(pos, slotFlipped[slot]));
+            }
+        }
+        return UNKNOWN;
+    }
+
+    // The move that wins fastest, or failing that draws, or failing that
+    // loses slowest; NONE when some position involved is not covered
+    int bestMove(Position pos) {
+        if (probe(pos) == UNKNOWN)
+            return Moves.NONE;
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        int count = MoveGenerator.generateLegal(pos, moves);
+        int best = Moves.NONE, bestRank = Integer.MIN_VALUE;
+        for (int i = 0; i < count; i++) {
+            pos.makeMove(moves[i]);
+            int value = probe(pos);
+            pos.unmakeMove(moves[i]);
+            if (value == UNKNOWN)
+                return Moves.NONE;
+            // The reply's value is from the opponent's side
+            int rank = value < 0 ? 1000 + value : value == 0 ? 0 : -1000 + value;
+            if (rank > bestRank) {
+                bestRank = rank;
+                best = moves[i];
+            }
+        }
+        return best;
+    }
+}
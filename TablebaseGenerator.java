@@ -0,0 +1,159 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+// Generates the tables read by Tablebase by retrograde iteration over
+// every position of a material combination: first the mates, then in
+// pass n every position that mates in n plies or can only be mated in n.
+// Captures and promotions are looked up in tables already generated, so
+// a table's successors must be listed before it. What is left open at
+// the end is a draw.
+//
+// Usage: java TablebaseGenerator [-dir tablebases] [KQvK KRvK ...]
+public class TablebaseGenerator {
+    private static final String[] DEFAULT_TABLES = { "KQvK", "KRvK", "KBvK", "KNvK", "KPvK" };
+
+    private final Tablebase tablebase = new Tablebase();
+    private final Position pos = new Position();
+    private final int[] moves = new int[MoveGenerator.MAX_MOVES];
+    private long wins, draws, losses;
+    private int longest;
+
+    public static void main(String[] args) throws IOException {
+        Path directory = Paths.get(System.getProperty("chess.tablebases", "tablebases"));
+        List<String> names = new ArrayList<>();
+        for (int a = 0; a < args.length; a++) {
+            if (args[a].equals("-dir"))
+                directory = Paths.get(args[++a]);
+            else
+                names.add(args[a]);
+        }
+        if (names.isEmpty())
+            names = List.of(DEFAULT_TABLES);
+        Files.createDirectories(directory);
+        TablebaseGenerator generator = new TablebaseGenerator();
+        generator.tablebase.load(directory);
+        for (String name : names) {
+            if (!name.matches("K[QRBNP]*vK[QRBNP]*") || name.length() - 1 > Tablebase.MAX_MEN) {
+                System.err.println("Not a table name: " + name);
+                System.exit(2);
+            }
+            long start = System.nanoTime();
+            byte[] values = generator.generate(new Tablebase.Table(name, null));
+            generator.write(directory.resolve(name + Tablebase.EXTENSION), name.length() - 1, values);
+            generator.tablebase.add(new Tablebase.Table(name, ByteBuffer.wrap(values)));
+            System.out.printf(Locale.ROOT, "%s: %d wins, %d draws, %d losses, longest mate %d plies, %.2f s%n", name,
+                    generator.wins, generator.draws, generator.losses, generator.longest,
+                    (System.nanoTime() - start) / 1e9);
+        }
+    }
+
+    byte[] generate(Tablebase.Table table) {
+        int size = (int) Tablebase.Table.size(table.men());
+        byte[] values = new byte[size];
+        boolean[] open = new boolean[size];
+        wins = draws = losses = 0;
+        longest = 0;
+
+        // Illegal positions stay 0 and closed; mates and stalemates are final
+        for (int index = 0; index < size; index++) {
+            if (!setUp(table, index))
+                continue;
+            if (MoveGenerator.generateLegal(pos, moves) > 0)
+                open[index] = true;
+            else if (pos.inCheck())
+                values[index] = -1;
+        }
+
+        // Other tables can hold mates of any length, so passes go on at
+        // least until the longest of those has been reached
+        int longestElsewhere = 0;
+        for (int dtm = 1;; dtm++) {
+            boolean changed = false;
+            for (int index = 0; index < size; index++) {
+                if (!open[index])
+                    continue;
+                setUp(table, index);
+                int count = MoveGenerator.generateLegal(pos, moves);
+                boolean win = false, allLost = true;
+                for (int i = 0; i < count && !win; i++) {
+                    int move = moves[i];
+                    boolean sameTable = pos.board[Moves.to(move)] == Position.EMPTY
+                            && Moves.flag(move) != Moves.EN_PASSANT && Moves.promotion(move) == 0;
+                    pos.makeMove(move);
+                    int value;
+                    if (sameTable) {
+                        int child = table.index(pos, false);
+                        value = open[child] ? Tablebase.UNKNOWN : values[child];
+                    } else {
+                        value = tablebase.probe(pos);
+                        if (value == Tablebase.UNKNOWN)
+                            throw new IllegalStateException("No table for " + pos.toFen());
+                        longestElsewhere = Math.max(longestElsewhere, Math.abs(value));
+                    }
+                    pos.unmakeMove(move);
+                    // Values are from the opponent's side: -n is mated in n - 1
+                    if (value == -dtm)
+                        win = true;
+                    else if (value == Tablebase.UNKNOWN || value <= 0 || value > dtm)
+                        allLost = false;
+                }
+                if (win || allLost) {
+                    if (dtm >= Byte.MAX_VALUE)
+                        throw new IllegalStateException("Mate too long to store in " + table.name);
+                    values[index] = (byte) (win ? dtm + 1 : -dtm - 1);
+                    open[index] = false;
+                    changed = true;
+                    longest = dtm;
+                }
+            }
+            if (!changed && dtm >= longestElsewhere)
+                break;
+        }
+
+        for (int index = 0; index < size; index++) {
+            if (open[index] || (values[index] == 0 && setUp(table, index)))
+                draws++;
+            else if (values[index] > 0)
+                wins++;
+            else if (values[index] < 0)
+                losses++;
+        }
+        return values;
+    }
+
+    // Places the position with this index in table orientation, returning
+    // false when it cannot occur in a game
+    private boolean setUp(Tablebase.Table table, int index) {
+        pos.clear();
+        int men = table.men();
+        for (int i = 0; i < men; i++) {
+            int sq = (index >>> (6 * (men - 1 - i))) & 63;
+            if ((pos.occupied & (1L << sq)) != 0)
+                return false;
+            if (table.types[i] == ChessPiece.PAWN && (sq < 8 || sq >= 56))
+                return false;
+            pos.putPiece(table.roles[i], table.types[i], sq);
+        }
+        pos.sideToMove = index >>> (6 * men);
+        pos.updateCheckInfo();
+        return !pos.isAttacked(pos.kingSquare(pos.sideToMove ^ 1), pos.sideToMove);
+    }
+
+    private void write(Path file, int men, byte[] values) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(file), 1 << 16))) {
+            out.writeInt(Tablebase.MAGIC);
+            out.writeInt(men);
+            out.writeLong(0);
+            out.write(values);
+        }
+    }
+}
@@ -0,0 +1,377 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Headless self-play between two computer levels, many games at a time on
+// a thread pool. Every opening is played twice with colours swapped, and
+// the match reports the Elo difference of player A over B with a 95%
+// interval, a sequential probability ratio test and games per second.
+// Games use the same Position, MoveGenerator and ComputerPlayer code as
+// ChessBoard; no Swing component is ever created.
+//
+// Usage: java Tournament [-a Hard] [-b Intermediate] [-games 200]
+//        [-concurrency N] [-tc 10+0.1] [-depth D] [-nodes N] [-hash 8]
+//        [-openings file] [-sprt elo0 elo1] [-alpha 0.05] [-beta 0.05]
+//        [-maxplies 400] [-seed S] [-book book.bin]
+//
+// -tc is base seconds plus increment seconds per side; a player whose
+// clock runs out loses. The openings file holds one FEN or one list of
+// UCI moves from the start position per line.
+public class Tournament {
+    // Balanced short openings as UCI moves from the start position
+    private static final String[] OPENINGS = {
+            "e2e4 e7e5 g1f3 b8c6 f1b5",
+            "e2e4 e7e5 g1f3 b8c6 f1c4",
+            "e2e4 c7c5 g1f3 d7d6",
+            "e2e4 c7c5 b1c3 b8c6",
+            "e2e4 e7e6 d2d4 d7d5",
+            "e2e4 c7c6 d2d4 d7d5",
+            "d2d4 d7d5 c2c4 e7e6",
+            "d2d4 d7d5 c2c4 c7c6",
+            "d2d4 g8f6 c2c4 g7g6 b1c3",
+            "d2d4 g8f6 c2c4 e7e6 g1f3",
+            "c2c4 e7e5 b1c3",
+            "g1f3 d7d5 g2g3",
+            "e2e4 d7d5 e4d5 d8d5",
+            "d2d4 f7f5 g2g3",
+            "e2e4 g7g6 d2d4 f8g7",
+            "c2c4 c7c5 g1f3 g8f6" };
+
+    static final int WIN = 2, DRAW = 1, LOSS = 0;
+    private static final String[] TERMINATIONS = { "checkmate", "stalemate", "fifty moves", "repetition",
+            "material", "max plies", "time" };
+    private static final int CHECKMATE = 0, STALEMATE = 1, FIFTY_MOVES = 2, REPETITION = 3, MATERIAL = 4,
+            MAX_PLIES = 5, TIME = 6;
+
+    private String playerA = "Hard", playerB = "Intermediate";
+    private int games = 200, concurrency = Engine.defaultThreads(), hash = 8, maxPlies = 400;
+    private int maxDepth = Search.MAX_PLY;
+    private long maxNodes = Long.MAX_VALUE, baseMillis = 10_000, incrementMillis = 100, seed = 1;
+    private boolean timed = true;
+    private double elo0 = Double.NaN, elo1, alpha = 0.05, beta = 0.05;
+    private final List<Position> openings = new ArrayList<>();
+    private PolyglotBook book;
+
+    private final ThreadLocal<Engine[]> engines = new ThreadLocal<>();
+    private final List<Engine> allEngines = new ArrayList<>();
+    private final AtomicBoolean finished = new AtomicBoolean();
+
+    // Outcome of one game from player A's point of view
+    private static final class Result {
+        final int outcome, termination, plies;
+
+        Result(int outcome, int termination, int plies) {
+            this.outcome = outcome;
+            this.termination = termination;
+            this.plies = plies;
+        }
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        Tournament t = new Tournament();
+        String openingFile = null;
+        for (int a = 0; a < args.length; a++) {
+            switch (args[a]) {
+                case "-a":
+                    t.playerA = args[++a];
+                    break;
+                case "-b":
+                    t.playerB = args[++a];
+                    break;
+                case "-games":
+                    t.games = Integer.parseInt(args[++a]);
+                    break;
+                case "-concurrency":
+                    t.concurrency = Integer.parseInt(args[++a]);
+                    break;
+                case "-tc":
+                    String[] tc = args[++a].split("\\+");
+                    t.baseMillis = Math.round(Double.parseDouble(tc[0]) * 1000);
+                    t.incrementMillis = tc.length > 1 ? Math.round(Double.parseDouble(tc[1]) * 1000) : 0;
+                    t.timed = true;
+                    break;
+                case "-depth":
+                    t.maxDepth = Integer.parseInt(args[++a]);
+                    t.timed = false;
+                    break;
+                case "-nodes":
+                    t.maxNodes = Long.parseLong(args[++a]);
+                    t.timed = false;
+                    break;
+                case "-hash":
+                    t.hash = Integer.parseInt(args[++a]);
+                    break;
+                case "-openings":
+                    openingFile = args[++a];
+                    break;
+                case "-sprt":
+                    t.elo0 = Double.parseDouble(args[++a]);
+                    t.elo1 = Double.parseDouble(args[++a]);
+                    break;
+                case "-alpha":
+                    t.alpha = Double.parseDouble(args[++a]);
+                    break;
+                case "-beta":
+                    t.beta = Double.parseDouble(args[++a]);
+                    break;
+                case "-maxplies":
+                    t.maxPlies = Integer.parseInt(args[++a]);
+                    break;
+                case "-seed":
+                    t.seed = Long.parseLong(args[++a]);
+                    break;
+                case "-book":
+                    t.book = PolyglotBook.open(Paths.get(args[++a]));
+                    break;
+                default:
+                    System.err.println("Unknown option: " + args[a]);
+                    System.exit(2);
+            }
+        }
+        if (!ComputerPlayer.isLevel(t.playerA) || !ComputerPlayer.isLevel(t.playerB)) {
+            System.err.println("Players must be one of " + String.join(", ", ComputerPlayer.LEVELS));
+            System.exit(2);
+        }
+        List<String> lines = new ArrayList<>();
+        if (openingFile != null) {
+            for (String line : Files.readAllLines(Paths.get(openingFile))) {
+                if (!line.trim().isEmpty() && !line.startsWith("#"))
+                    lines.add(line.trim());
+            }
+        } else {
+            lines.addAll(List.of(OPENINGS));
+        }
+        for (String line : lines)
+            t.openings.add(parseOpening(line));
+        t.run();
+    }
+
+    // A line with a '/' is a FEN, anything else UCI moves from the start
+    static Position parseOpening(String line) {
+        if (line.indexOf('/') >= 0)
+            return Position.fromFen(line);
+        Position pos = Position.startPosition();
+        for (String uci : line.split("\\s+")) {
+            int move = Moves.fromUci(pos, uci);
+            if (move == Moves.NONE)
+                throw new IllegalArgumentException("Illegal opening move " + uci + " in: " + line);
+            pos.makeMove(move);
+        }
+        return pos;
+    }
+
+    private void run() throws InterruptedException {
+        System.out.printf(Locale.ROOT, "%s vs %s, %d games, %d at a time, %s, %d openings%n", playerA, playerB,
+                games, concurrency, timed ? String.format(Locale.ROOT, "%.1f+%.2f s", baseMillis / 1000.0,
+                        incrementMillis / 1000.0) : describeLimits(), openings.size());
+        ExecutorService pool = Executors.newFixedThreadPool(concurrency, r -> {
+            Thread t = new Thread(r, "tournament-game");
+            t.setDaemon(true);
+            return t;
+        });
+        CompletionService<Result> results = new ExecutorCompletionService<>(pool);
+        for (int g = 0; g < games; g++) {
+            int game = g;
+            results.submit(() -> finished.get() ? null : playGame(game));
+        }
+
+        int[] outcomes = new int[3];
+        int[] terminations = new int[TERMINATIONS.length];
+        long plies = 0;
+        int played = 0;
+        String verdict = null;
+        long start = System.nanoTime();
+        for (int g = 0; g < games; g++) {
+            Result result;
+            try {
+                result = results.take().get();
+            } catch (ExecutionException e) {
+                finished.set(true);
+                pool.shutdownNow();
+                throw new IllegalStateException("Game failed", e.getCause());
+            }
+            if (result == null)
+                continue;
+            played++;
+            outcomes[result.outcome]++;
+            terminations[result.termination]++;
+            plies += result.plies;
+            if (verdict == null && !Double.isNaN(elo0)) {
+                double llr = llr(outcomes);
+                if (llr >= Math.log((1 - beta) / alpha))
+                    verdict = "H1 accepted";
+                else if (llr <= Math.log(beta / (1 - alpha)))
+                    verdict = "H0 accepted";
+                if (verdict != null)
+                    finished.set(true);
+            }
+            if (played % Math.max(1, Math.min(100, games / 20)) == 0 || verdict != null)
+                System.out.println(summary(outcomes, System.nanoTime() - start));
+        }
+        pool.shutdown();
+        for (Engine engine : allEngines)
+            engine.shutdown();
+        long nanos = System.nanoTime() - start;
+
+        System.out.println();
+        System.out.println(summary(outcomes, nanos));
+        StringBuilder ends = new StringBuilder("Terminations:");
+        for (int i = 0; i < TERMINATIONS.length; i++) {
+            if (terminations[i] > 0)
+                ends.append(' ').append(TERMINATIONS[i]).append(' ').append(terminations[i]);
+        }
+        System.out.println(ends);
+        System.out.printf(Locale.ROOT, "Games: %d in %.1f s, %.2f games/s, %.1f plies/game%n", played, nanos / 1e9,
+                played * 1e9 / Math.max(1, nanos), (double) plies / Math.max(1, played));
+        if (!Double.isNaN(elo0))
+            System.out.printf(Locale.ROOT, "SPRT [%.1f, %.1f] alpha %.3f beta %.3f: LLR %.2f (%.2f, %.2f) %s%n", elo0,
+                    elo1, alpha, beta, llr(outcomes), Math.log(beta / (1 - alpha)), Math.log((1 - beta) / alpha),
+                    verdict != null ? verdict : "inconclusive");
+    }
+
+    private String describeLimits() {
+        StringBuilder s = new StringBuilder();
+        if (maxDepth < Search.MAX_PLY)
+            s.append("depth ").append(maxDepth);
+        if (maxNodes < Long.MAX_VALUE)
+            s.append(s.length() > 0 ? ", " : "").append(maxNodes).append(" nodes");
+        return s.toString();
+    }
+
+    // Player A is white in even games; each opening is used by two
+    // consecutive games so both players get both sides of it
+    private Result playGame(int game) {
+        Engine[] pair = engines.get();
+        if (pair == null) {
+            pair = new Engine[] { new Engine(hash, 1), new Engine(hash, 1) };
+            synchronized (allEngines) {
+                allEngines.add(pair[0]);
+                allEngines.add(pair[1]);
+            }
+            engines.set(pair);
+        }
+        Random random = new Random(seed * 1_000_003L + game);
+        boolean aIsWhite = (game & 1) == 0;
+        ComputerPlayer a = new ComputerPlayer(playerA, pair[0], random);
+        ComputerPlayer b = new ComputerPlayer(playerB, pair[1], random);
+        a.setBook(book);
+        b.setBook(book);
+        ComputerPlayer[] byColor = aIsWhite ? new ComputerPlayer[] { a, b } : new ComputerPlayer[] { b, a };
+        pair[0].clearHash();
+        pair[1].clearHash();
+
+        Position pos = openings.get((game / 2) % openings.size()).copy();
+        long[] clock = { baseMillis, baseMillis };
+        int plies = 0;
+        int winner = -1, termination;
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        while (true) {
+            int us = pos.sideToMove;
+            if (MoveGenerator.generateLegal(pos, moves) == 0) {
+                termination = pos.inCheck() ? CHECKMATE : STALEMATE;
+                if (termination == CHECKMATE)
+                    winner = us ^ 1;
+                break;
+            }
+            if (pos.halfmoveClock >= 100) {
+                termination = FIFTY_MOVES;
+                break;
+            }
+            if (pos.repetitions() >= 2) {
+                termination = REPETITION;
+                break;
+            }
+            if (pos.insufficientMaterial()) {
+                termination = MATERIAL;
+                break;
+            }
+            if (plies >= maxPlies) {
+                termination = MAX_PLIES;
+                break;
+            }
+
+            long budget = timed ? Search.allocateTime(clock[us], incrementMillis, 0) : SearchLimits.INFINITE;
+            long start = System.nanoTime();
+            int move = byColor[us].chooseMove(pos, budget, maxDepth, maxNodes);
+            if (timed) {
+                clock[us] -= (System.nanoTime() - start) / 1_000_000L;
+                if (clock[us] < 0) {
+                    termination = TIME;
+                    winner = us ^ 1;
+                    break;
+                }
+                clock[us] += incrementMillis;
+            }
+            pos.makeMove(move);
+            plies++;
+        }
+
+        int outcome;
+        if (winner < 0)
+            outcome = DRAW;
+        else
+            outcome = (winner == ChessPiece.WHITE) == aIsWhite ? WIN : LOSS;
+        return new Result(outcome, termination, plies);
+    }
+
+    private String summary(int[] outcomes, long nanos) {
+        int n = outcomes[WIN] + outcomes[DRAW] + outcomes[LOSS];
+        double score = score(outcomes);
+        double se = Math.sqrt(variance(outcomes) / Math.max(1, n));
+        double elo = elo(score);
+        double lower = elo(score - 1.96 * se), upper = elo(score + 1.96 * se);
+        String line = String.format(Locale.ROOT, "%d games: +%d =%d -%d, score %.1f%%, Elo %+.1f +/- %.1f",
+                n, outcomes[WIN], outcomes[DRAW], outcomes[LOSS], score * 100, elo, (upper - lower) / 2);
+        if (!Double.isNaN(elo0))
+            line += String.format(Locale.ROOT, ", LLR %.2f", llr(outcomes));
+        return line + String.format(Locale.ROOT, ", %.2f games/s", n * 1e9 / Math.max(1, nanos));
+    }
+
+    static double score(int[] outcomes) {
+        int n = outcomes[WIN] + outcomes[DRAW] + outcomes[LOSS];
+        return n == 0 ? 0.5 : (outcomes[WIN] + 0.5 * outcomes[DRAW]) / n;
+    }
+
+    // Per-game variance of the score
+    static double variance(int[] outcomes) {
+        int n = outcomes[WIN] + outcomes[DRAW] + outcomes[LOSS];
+        if (n == 0)
+            return 0;
+        double s = score(outcomes);
+        return (outcomes[WIN] * (1 - s) * (1 - s) + outcomes[DRAW] * (0.5 - s) * (0.5 - s)
+                + outcomes[LOSS] * s * s) / n;
+    }
+
+    // Logistic Elo difference for an expected score, clamped away from the
+    // infinite values of an all-win or all-loss match
+    static double elo(double score) {
+        score = Math.max(1e-6, Math.min(1 - 1e-6, score));
+        return -400 * Math.log10(1 / score - 1);
+    }
+
+    static double expectedScore(double elo) {
+        return 1 / (1 + Math.pow(10, -elo / 400));
+    }
+
+    // Log-likelihood ratio of elo1 over elo0 under the normal approximation
+    // to the trinomial game outcomes, as used by the usual engine testing
+    // frameworks
+    private double llr(int[] outcomes) {
+        int n = outcomes[WIN] + outcomes[DRAW] + outcomes[LOSS];
+        double variance = variance(outcomes);
+        if (n == 0 || variance == 0)
+            return 0;
+        double s0 = expectedScore(elo0), s1 = expectedScore(elo1);
+        return (s1 - s0) * (2 * score(outcomes) - s0 - s1) * n / (2 * variance);
+    }
+}
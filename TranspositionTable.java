@@ -0,0 +1,125 @@
+import java.util.Arrays;
+
+// Fixed-size hash table of search results packed into a long[]. Each bucket
+// holds two entries of (key ^ data, data): the first is replaced only by
+// deeper or newer results, the second always. Storing the key xor'ed with
+// the data lets search threads share the table without locks: an entry torn
+// by a concurrent write no longer matches its key and reads as a miss.
+final class TranspositionTable {
+    static final int UPPER = 1, LOWER = 2, EXACT = 3;
+
+    private static final int BUCKET_LONGS = 4;
+    private static final int ENTRY_BYTES = 16;
+
+    private long[] table;
+    private int bucketMask;
+    private volatile int age;
+
+    TranspositionTable(int megabytes) {
+        resize(megabytes);
+    }
+
+    // Bucket count is rounded down to a power of two so indexing is a mask
+    void resize(int megabytes) {
+        long buckets = Math.max(1L, (long) megabytes * 1024 * 1024 / (ENTRY_BYTES * 2));
+        int bits = 63 - Long.numberOfLeadingZeros(buckets);
+        bits = Math.min(bits, 27);
+        table = new long[(1 << bits) * BUCKET_LONGS];
+        bucketMask = (1 << bits) - 1;
+        clear();
+    }
+
+    void clear() {
+        Arrays.fill(table, 0L);
+        age = 0;
+    }
+
+    int sizeMegabytes() {
+        return (int) ((long) table.length * 8 / (1024 * 1024));
+    }
+
+    // Called once per search, before any thread starts, so entries from
+    // earlier searches age out
+    void newSearch() {
+        age = (age + 1) & 0xFF;
+    }
+
+    private int bucket(long key) {
+        return ((int) (key >>> 32) & bucketMask) * BUCKET_LONGS;
+    }
+
+    // Returns the packed data for key, or 0 when there is no entry
+    long probe(long key) {
+        int b = bucket(key);
+        for (int i = b; i < b + BUCKET_LONGS; i += 2) {
+            long data = table[i + 1];
+            if (data != 0 && (table[i] ^ data) == key)
+                return data;
+        }
+        return 0L;
+    }
+
+    void store(long key, int move, int score, int depth, int bound) {
+        int b = bucket(key);
+        long old = table[b + 1];
+        int slot = b + 2;
+        if ((table[b] ^ old) == key || old == 0 || depth >= depth(old) || age(old) != age)
+            slot = b;
+        // Keep the previous best move when a shallower result has none
+        long previous = table[slot + 1];
+        if (move == Moves.NONE && (table[slot] ^ previous) == key)
+            move = move(previous);
+        long data = pack(move, score, depth, bound);
+        table[slot] = key ^ data;
+        table[slot + 1] = data;
+    }
+
+    private long pack(int move, int score, int depth, int bound) {
+        return (move & 0x1FFFFL)
+                | ((long) (score + 32768) & 0xFFFF) << 17
+                | ((long) Math.max(0, Math.min(depth, 255))) << 33
+                | ((long) bound) << 41
+                | ((long) age) << 43;
+    }
+
+    static int move(long data) {
+        return (int) (data & 0x1FFFF);
+    }
+
+    static int score(long data) {
+        return (int) ((data >>> 17) & 0xFFFF) - 32768;
+    }
+
+    static int depth(long data) {
+        return (int) ((data >>> 33) & 0xFF);
+    }
+
+    static int bound(long data) {
+        return (int) ((data >>> 41) & 3);
+    }
+
+    private static int age(long data) {
+        return (int) ((data >>> 43) & 0xFF);
+    }
+
+    // Permille of entries written during the current search, sampled from
+    // the first thousand buckets as UCI's hashfull does
+    int fillPermille() {
+        int sample = Math.min(1000, bucketMask + 1);
+        int used = 0;
+        for (int i = 0; i < sample; i++) {
+            int b = i * BUCKET_LONGS;
+            for (int j = b + 1; j < b + BUCKET_LONGS; j += 2) {
+                if (table[j] != 0 && age(table[j]) == age)
+                    used++;
+            }
+        }
+        return used * 1000 / (sample * 2);
+    }
+
+    String report(long probes, long hits) {
+        double hitRate = probes == 0 ? 0.0 : 100.0 * hits / probes;
+        return String.format("Hash %d MB, hit rate %.1f%%, fill %.1f%%",
+                sizeMegabytes(), hitRate, fillPermille() / 10.0);
+    }
+}
@@ -0,0 +1,292 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// Universal Chess Interface over stdin/stdout, for running the engine
+// headless under GUIs and tournament managers. Started by "Chess --uci";
+// nothing here touches AWT or Swing.
+final class UciEngine {
+    private static final int DEFAULT_HASH = 16;
+    private static final int MAX_HASH = 4096;
+    private static final int MAX_THREADS = 256;
+
+    private final BufferedReader in;
+    private final PrintStream out;
+    private final Engine engine = new Engine(DEFAULT_HASH, 1);
+    private final ExecutorService searcher = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "uci-search");
+        t.setDaemon(true);
+        return t;
+    });
+    private Position position = Position.startPosition();
+    private Future<?> running;
+
+    // "go infinite" and "go ponder" must not report bestmove before the GUI
+    // sends stop or ponderhit, even when the search ends on its own
+    private boolean holdBestMove;
+    private long ponderBudget;
+
+    UciEngine(BufferedReader in, PrintStream out) {
+        this.in = in;
+        this.out = out;
+        engine.setInfoListener(this::printInfo);
+    }
+
+    static void run() throws IOException {
+        new UciEngine(new BufferedReader(new InputStreamReader(System.in)), new PrintStream(System.out, true))
+                .loop();
+    }
+
+    void loop() throws IOException {
+        String line;
+        while ((line = in.readLine()) != null) {
+            line = line.trim();
+            if (line.isEmpty())
+                continue;
+            if (!handle(line))
+                break;
+        }
+        stopSearch();
+        searcher.shutdownNow();
+        engine.shutdown();
+    }
+
+    private boolean handle(String line) {
+        String[] tokens = line.split("\\s+");
+        switch (tokens[0]) {
+            case "uci":
+                out.println("id name Chess");
+                out.println("id author Chess contributors");
+                out.println("option name Hash type spin default " + DEFAULT_HASH + " min 1 max " + MAX_HASH);
+                out.println("option name Threads type spin default 1 min 1 max " + MAX_THREADS);
+                out.println("option name Ponder type check default false");
+                out.println("uciok");
+                break;
+            case "isready":
+                out.println("readyok");
+                break;
+            case "setoption":
+                setOption(line);
+                break;
+            case "ucinewgame":
+                stopSearch();
+                engine.clearHash();
+                position = Position.startPosition();
+                break;
+            case "position":
+                stopSearch();
+                setPosition(tokens);
+                break;
+            case "go":
+                stopSearch();
+                go(tokens);
+                break;
+            case "stop":
+                stopSearch();
+                break;
+            case "ponderhit":
+                engine.ponderHit(ponderBudget);
+                release();
+                break;
+            case "quit":
+                return false;
+            default:
+                out.println("info string unknown command " + tokens[0]);
+                break;
+        }
+        return true;
+    }
+
+    private void setOption(String line) {
+        int nameAt = line.indexOf(" name ");
+        int valueAt = line.indexOf(" value ");
+        if (nameAt < 0 || valueAt < nameAt)
+            return;
+        String name = line.substring(nameAt + 6, valueAt).trim();
+        String value = line.substring(valueAt + 7).trim();
+        try {
+            if (name.equalsIgnoreCase("Hash")) {
+                stopSearch();
+                engine.setHashSize(Math.max(1, Math.min(MAX_HASH, Integer.parseInt(value))));
+            } else if (name.equalsIgnoreCase("Threads")) {
+                stopSearch();
+                engine.setThreads(Math.max(1, Math.min(MAX_THREADS, Integer.parseInt(value))));
+            }
+        } catch (NumberFormatException e) {
+            out.println("info string invalid value for " + name + ": " + value);
+        }
+    }
+
+    private void setPosition(String[] tokens) {
+        int i = 1;
+        Position next;
+        if (tokens.length > 1 && tokens[1].equals("startpos")) {
+            next = Position.startPosition();
+            i = 2;
+        } else if (tokens.length > 1 && tokens[1].equals("fen")) {
+            StringBuilder fen = new StringBuilder();
+            for (i = 2; i < tokens.length && !tokens[i].equals("moves"); i++)
+                fen.append(tokens[i]).append(' ');
+            try {
+                next = Position.fromFen(fen.toString());
+            } catch (RuntimeException e) {
+                out.println("info string invalid fen " + fen.toString().trim());
+                return;
+            }
+        } else {
+            return;
+        }
+        if (i < tokens.length && tokens[i].equals("moves")) {
+            for (i++; i < tokens.length; i++) {
+                int move = Moves.fromUci(next, tokens[i]);
+                if (move == Moves.NONE) {
+                    out.println("info string illegal move " + tokens[i]);
+                    break;
+                }
+                next.makeMove(move);
+            }
+        }
+        position = next;
+    }
+
+    // A go argument, or the default with a note to the GUI when it is not
+    // a number, so a bad value cannot take the engine down
+    private long parse(String name, String value, long fallback) {
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            out.println("info string invalid value for " + name + ": " + value);
+            return fallback;
+        }
+    }
+
+    private void go(String[] tokens) {
+        long wtime = -1, btime = -1, winc = 0, binc = 0, movetime = -1, nodes = Long.MAX_VALUE;
+        int movestogo = 0, depth = Search.MAX_PLY;
+        boolean infinite = false, ponder = false, limited = false;
+        for (int i = 1; i < tokens.length; i++) {
+            String value = i + 1 < tokens.length ? tokens[i + 1] : "0";
+            switch (tokens[i]) {
+                case "wtime":
+                    wtime = parse(tokens[i], value, wtime);
+                    break;
+                case "btime":
+                    btime = parse(tokens[i], value, btime);
+                    break;
+                case "winc":
+                    winc = parse(tokens[i], value, winc);
+                    break;
+                case "binc":
+                    binc = parse(tokens[i], value, binc);
+                    break;
+                case "movestogo":
+                    movestogo = (int) Math.min(Integer.MAX_VALUE, parse(tokens[i], value, movestogo));
+                    break;
+                case "movetime":
+                    movetime = parse(tokens[i], value, movetime);
+                    break;
+                case "depth":
+                    depth = (int) Math.max(1, Math.min(Search.MAX_PLY, parse(tokens[i], value, depth)));
+                    limited = true;
+                    break;
+                case "nodes":
+                    nodes = parse(tokens[i], value, nodes);
+                    limited = true;
+                    break;
+                case "infinite":
+                    infinite = true;
+                    break;
+                case "ponder":
+                    ponder = true;
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        long remaining = position.sideToMove == ChessPiece.WHITE ? wtime : btime;
+        long increment = position.sideToMove == ChessPiece.WHITE ? winc : binc;
+        long budget;
+        if (movetime >= 0)
+            budget = movetime;
+        else if (remaining >= 0)
+            budget = Search.allocateTime(remaining, increment, movestogo);
+        else
+            budget = SearchLimits.INFINITE;
+        if (budget == SearchLimits.INFINITE && !limited)
+            infinite = true;
+
+        Position root = position.copy();
+        int maxDepth = depth;
+        long maxNodes = nodes;
+        long searchBudget = budget;
+        synchronized (this) {
+            holdBestMove = infinite || ponder;
+        }
+        ponderBudget = budget;
+        boolean pondering = ponder;
+        running = searcher.submit(() -> {
+            int best = pondering ? engine.ponder(root, maxDepth)
+                    : engine.findBestMove(root, searchBudget, maxDepth, maxNodes);
+            try {
+                awaitRelease();
+            } catch (InterruptedException e) {
+                return;
+            }
+            int reply = engine.getPonderMove(root, best);
+            out.println("bestmove " + Moves.toUci(best) + (reply != Moves.NONE ? " ponder " + Moves.toUci(reply) : ""));
+        });
+    }
+
+    private void printInfo(int depth, int score, long nodes, long millis, int hashFull, int[] pv) {
+        StringBuilder line = new StringBuilder("info depth ").append(depth);
+        int plies = Search.pliesToMate(score);
+        if (plies >= 0) {
+            line.append(" score mate ").append(score > 0 ? (plies + 1) / 2 : -(plies + 1) / 2);
+        } else {
+            line.append(" score cp ").append(score);
+        }
+        line.append(" nodes ").append(nodes)
+                .append(" nps ").append(nodes * 1000 / Math.max(1, millis))
+                .append(" time ").append(millis)
+                .append(" hashfull ").append(hashFull)
+                .append(" tbhits ").append(engine.getTablebaseHits());
+        if (pv.length > 0) {
+            line.append(" pv");
+            for (int move : pv)
+                line.append(' ').append(Moves.toUci(move));
+        }
+        out.println(line);
+    }
+
+    private synchronized void awaitRelease() throws InterruptedException {
+        while (holdBestMove)
+            wait();
+    }
+
+    private synchronized void release() {
+        holdBestMove = false;
+        notifyAll();
+    }
+
+    // Ends any running search and waits until its bestmove is printed
+    private void stopSearch() {
+        if (running == null)
+            return;
+        engine.stop();
+        release();
+        try {
+            running.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            out.println("info string search failed: " + e.getCause());
+        }
+        running = null;
+    }
+}
@@ -0,0 +1,40 @@
+import java.util.SplittableRandom;
+
+// Random keys for incremental position hashing. A fixed seed keeps keys
+// stable between runs so hashes can be stored on disk.
+final class Zobrist {
+    static final long[][] PIECE = new long[12][64];
+    static final long[] CASTLING = new long[16];
+    static final long[] EP_FILE = new long[8];
+    static final long SIDE;
+
+    static {
+        SplittableRandom random = new SplittableRandom(0x5EED_C0DE_CAFEL);
+        for (long[] piece : PIECE) {
+            for (int sq = 0; sq < 64; sq++)
+                piece[sq] = random.nextLong();
+        }
+        for (int i = 0; i < CASTLING.length; i++)
+            CASTLING[i] = random.nextLong();
+        for (int i = 0; i < EP_FILE.length; i++)
+            EP_FILE[i] = random.nextLong();
+        SIDE = random.nextLong();
+    }
+
+    private Zobrist() {
+    }
+
+    static long compute(Position pos) {
+        long key = 0;
+        for (int sq = 0; sq < 64; sq++) {
+            if (pos.board[sq] != Position.EMPTY)
+                key ^= PIECE[pos.board[sq]][sq];
+        }
+        key ^= CASTLING[pos.castlingRights];
+        if (pos.epSquare != Position.EMPTY)
+            key ^= EP_FILE[pos.epSquare & 7];
+        if (pos.sideToMove == ChessPiece.BLACK)
+            key ^= SIDE;
+        return key;
+    }
+}